@@ -0,0 +1,30 @@
+package bguspl.set;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Creates game environments for the benchmarks: no window, no log output and no table delays.
+ */
+public class BenchmarkEnv {
+
+    /**
+     * Creates an environment with the given configuration properties on top of the benchmark defaults.
+     *
+     * @param overrides - configuration properties (as in config.properties) to use.
+     * @return - a headless game environment.
+     */
+    public static Env create(Properties overrides) {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "0");
+        properties.putAll(overrides);
+
+        // a logger without handlers still pays for building the messages, like the game does
+        Logger logger = Logger.getLogger("BenchmarkLogger");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new HeadlessUserInterface(), new UtilImpl(config));
+    }
+}
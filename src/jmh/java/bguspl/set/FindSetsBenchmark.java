@@ -0,0 +1,67 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the pair based UtilImpl.findSets against the combinations walk it replaced.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FindSetsBenchmark {
+
+    @Param({"3", "4"})
+    int featureSize;
+
+    @Param({"3", "4"})
+    int featureCount;
+
+    /**
+     * The number of cards to search in (12 is a full table, 81 is the full standard deck), capped by the deck size.
+     */
+    @Param({"12", "21", "40", "81"})
+    int cards;
+
+    /**
+     * The maximum number of sets to find (1 is what the dealer asks for, MAX_VALUE is what the hints ask for).
+     */
+    @Param({"1", "2147483647"})
+    int count;
+
+    UtilImpl util;
+    List<Integer> deck;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        Env env = BenchmarkEnv.create(properties);
+        util = new UtilImpl(env.config);
+        deck = new ArrayList<>(env.config.deckSize);
+        for (int card = 0; card < env.config.deckSize; ++card)
+            deck.add(card);
+        Collections.shuffle(deck, new Random(42));
+        deck = new ArrayList<>(deck.subList(0, Math.min(cards, deck.size())));
+    }
+
+    @Benchmark
+    public List<int[]> pairs() {
+        return util.findSets(deck, count);
+    }
+
+    @Benchmark
+    public List<int[]> combinations() {
+        return util.findSetsByCombinations(deck, count);
+    }
+}
@@ -0,0 +1,69 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures UtilImpl.testSet on random card combinations (mostly non-sets, like most player claims).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TestSetBenchmark {
+
+    private static final int COMBINATIONS = 1024;
+
+    @Param({"3", "4"})
+    int featureSize;
+
+    @Param({"3", "4", "5"})
+    int featureCount;
+
+    UtilImpl util;
+    int[][] claims;
+    int[][] sets;
+    int next;
+
+    @Setup
+    public void setUp() {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        Env env = BenchmarkEnv.create(properties);
+        util = new UtilImpl(env.config);
+
+        Random random = new Random(42);
+        claims = new int[COMBINATIONS][featureSize];
+        for (int[] claim : claims)
+            for (int i = 0; i < claim.length; ++i)
+                claim[i] = random.nextInt(env.config.deckSize);
+
+        // legal sets: every feature is either the same in all cards or different in all cards
+        sets = new int[COMBINATIONS][featureSize];
+        for (int[] set : sets)
+            for (int f = 0, weight = 1; f < featureCount; ++f, weight *= featureSize) {
+                boolean same = random.nextBoolean();
+                int value = random.nextInt(featureSize);
+                for (int i = 0; i < set.length; ++i)
+                    set[i] += (same ? value : (value + i) % featureSize) * weight;
+            }
+    }
+
+    @Benchmark
+    public boolean randomClaim() {
+        next = (next + 1) & (COMBINATIONS - 1);
+        return util.testSet(claims[next]);
+    }
+
+    @Benchmark
+    public boolean legalSet() {
+        next = (next + 1) & (COMBINATIONS - 1);
+        return util.testSet(sets[next]);
+    }
+}
@@ -0,0 +1,69 @@
+package bguspl.set.ex;
+
+import bguspl.set.BenchmarkEnv;
+import bguspl.set.Env;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the dealer's set check path (Dealer.removeCardsFromTable) for a single claim, either a legal set
+ * (cards are removed and replaced) or an illegal one (the player is penalized).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DealerSetCheckBenchmark {
+
+    @Param({"true", "false"})
+    boolean legal;
+
+    Env env;
+    Table table;
+    Dealer dealer;
+    Player player;
+    Method removeCardsFromTable;
+
+    int[] cards;
+    DealerEvent claim;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException {
+        Properties properties = new Properties();
+        properties.put("ComputerPlayers", "1");
+        env = BenchmarkEnv.create(properties);
+        table = new Table(env);
+        Player[] players = new Player[env.config.players];
+        dealer = new Dealer(env, table, players);
+        player = players[0] = new Player(env, dealer, table, 0, false);
+
+        removeCardsFromTable = Dealer.class.getDeclaredMethod("removeCardsFromTable", DealerEvent.class);
+        removeCardsFromTable.setAccessible(true);
+
+        int third = env.util.completeSet(0, 1);
+        cards = legal ? new int[]{0, 1, third} : new int[]{0, 1, third == 2 ? 3 : 2};
+    }
+
+    @Setup(Level.Invocation)
+    public void submitClaim() {
+        for (int slot = 0; slot < cards.length; ++slot) {
+            if (table.slotToCard[slot] == null || table.slotToCard[slot] != cards[slot]) {
+                if (table.slotToCard[slot] != null) table.removeCard(slot);
+                table.placeCard(cards[slot], slot);
+            }
+            table.placeToken(player.id, slot);
+        }
+        player.needs_set_check = true;
+        claim = DealerEvent.claim(table.claim(player.id));
+    }
+
+    @Benchmark
+    public Object checkClaim() throws ReflectiveOperationException {
+        return removeCardsFromTable.invoke(dealer, claim);
+    }
+}
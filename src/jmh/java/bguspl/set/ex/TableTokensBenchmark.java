@@ -0,0 +1,64 @@
+package bguspl.set.ex;
+
+import bguspl.set.BenchmarkEnv;
+import bguspl.set.Env;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Measures Table.placeToken followed by Table.removeToken with several players marking slots of the same table.
+ * Run with -t to change the number of contending players.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class TableTokensBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedTable {
+
+        /**
+         * The number of slots the players are marking (a smaller table means more players on the same slot).
+         */
+        @Param({"3", "12"})
+        int slots;
+
+        Table table;
+        final AtomicInteger nextPlayer = new AtomicInteger();
+
+        @Setup
+        public void setUp() {
+            Properties properties = new Properties();
+            properties.put("ComputerPlayers", "64");
+            Env env = BenchmarkEnv.create(properties);
+            table = new Table(env);
+            for (int slot = 0; slot < env.config.tableSize; ++slot)
+                table.placeCard(slot, slot);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class PlayerState {
+
+        int player;
+
+        @Setup
+        public void setUp(SharedTable shared) {
+            player = shared.nextPlayer.getAndIncrement();
+        }
+    }
+
+    @Benchmark
+    public boolean placeAndRemove(SharedTable shared, PlayerState state) {
+        int slot = ThreadLocalRandom.current().nextInt(shared.slots);
+        shared.table.placeToken(state.player, slot);
+        return shared.table.removeToken(state.player, slot);
+    }
+}
@@ -0,0 +1,247 @@
+package bguspl.set;
+
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+/**
+ * A log handler that doesn't make the logging threads wait for the disk: log records are put in a bounded lock-free
+ * ring buffer, and a single writer thread formats them and writes them in batches, flushing once per batch.
+ * When the ring buffer is full, the logging thread either waits for room (block, the default) or the record is dropped
+ * and counted (drop); the number of dropped records is written to the log.
+ */
+public class AsyncLogHandler extends Handler {
+
+    /**
+     * The default number of log records the ring buffer holds.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The maximum number of records written between flushes.
+     */
+    private static final int BATCH_SIZE = 512;
+
+    /**
+     * How long the writer thread sleeps when there is nothing to write, if it isn't woken up before.
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final LogRecord[] records;
+
+    /**
+     * The sequence number of every slot of the ring buffer: equal to the position that can be published into the slot
+     * when it is free, and one more than that position once the record is published (a bounded MPSC queue).
+     */
+    private final AtomicLongArray sequences;
+
+    private final int mask;
+
+    /**
+     * The position the next record is published to (shared by the logging threads).
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The position of the next record to write (used by the writer thread only).
+     */
+    private long head;
+
+    /**
+     * The number of records written and flushed so far.
+     */
+    private volatile long written;
+
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile boolean dropWhenFull = false;
+
+    private volatile boolean writerWaiting = false;
+
+    private volatile boolean closed = false;
+
+    private final Writer out;
+
+    private final Thread writer;
+
+    /**
+     * Creates a handler that writes to a file.
+     *
+     * @param fileName - the name of the log file (overwritten).
+     * @throws IOException - if the file cannot be opened.
+     */
+    public AsyncLogHandler(String fileName) throws IOException {
+        this(new OutputStreamWriter(new FileOutputStream(fileName), StandardCharsets.UTF_8), DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param out      - where to write the formatted records (buffered by the handler).
+     * @param capacity - the number of records the ring buffer holds (rounded up to a power of 2).
+     */
+    public AsyncLogHandler(Writer out, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        records = new LogRecord[size];
+        sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) sequences.set(i, i);
+        mask = size - 1;
+        this.out = new BufferedWriter(out, 1 << 16);
+
+        writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);  // close() (also called by the LogManager at shutdown) writes what's left
+        writer.start();
+    }
+
+    /**
+     * @param dropWhenFull - true to drop records when the ring buffer is full, false to make the logging thread wait.
+     */
+    public void setDropWhenFull(boolean dropWhenFull) {
+        this.dropWhenFull = dropWhenFull;
+    }
+
+    /**
+     * @return - the number of records dropped so far that weren't reported in the log yet.
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        while (!offer(record)) {
+            if (dropWhenFull) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));  // wait for the writer to make room
+            if (closed) return;
+        }
+        if (writerWaiting) LockSupport.unpark(writer);
+    }
+
+    /**
+     * Waits until all the records published before the call are written and flushed.
+     */
+    @Override
+    public void flush() {
+        long target = tail.get();
+        while (written < target && writer.isAlive()) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Writes the remaining records and closes the output.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    private boolean offer(LogRecord record) {
+        long position = tail.get();
+        while (true) {
+            int index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records[index] = record;
+                    sequences.set(index, position + 1);  // publishes the record to the writer
+                    return true;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;  // the slot still holds a record that wasn't written, the ring buffer is full
+            } else {
+                position = tail.get();  // another thread took the position
+            }
+        }
+    }
+
+    private LogRecord poll() {
+        int index = (int) (head & mask);
+        if (sequences.get(index) != head + 1) return null;
+        LogRecord record = records[index];
+        records[index] = null;
+        sequences.set(index, head + mask + 1);  // frees the slot for the position one round later
+        head++;
+        return record;
+    }
+
+    private boolean isEmpty() {
+        return sequences.get((int) (head & mask)) != head + 1;
+    }
+
+    private void writeLoop() {
+        int batch = 0;
+        while (true) {
+            LogRecord record = poll();
+            if (record != null) {
+                write(record);
+                if (++batch == BATCH_SIZE) {
+                    endBatch();
+                    batch = 0;
+                }
+                continue;
+            }
+
+            if (batch > 0 || dropped.sum() > 0) {
+                endBatch();
+                batch = 0;
+            }
+            if (closed && tail.get() == head) break;  // everything published before close was written
+
+            writerWaiting = true;
+            if (isEmpty() && !closed) LockSupport.parkNanos(this, IDLE_NANOS);
+            writerWaiting = false;
+        }
+    }
+
+    private void write(LogRecord record) {
+        try {
+            out.write(getFormatter() != null ? getFormatter().format(record) : record.getMessage() + System.lineSeparator());
+        } catch (Exception e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * Reports the dropped records and flushes the batch.
+     */
+    private void endBatch() {
+        long count = dropped.sumThenReset();
+        if (count > 0) write(new LogRecord(Level.WARNING, count + " log records were dropped (the log buffer was full)"));
+        try {
+            out.flush();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.FLUSH_FAILURE);
+        }
+        written = head;
+    }
+}
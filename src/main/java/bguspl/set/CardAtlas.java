@@ -0,0 +1,228 @@
+package bguspl.set;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.logging.Logger;
+
+/**
+ * All the card images in a single image, scaled to the cell size once. Drawing a card is then a copy of a region of
+ * the atlas, with no decoding or scaling.
+ * Only the empty card is loaded when the atlas is created. The other images are decoded by background threads, the
+ * cards that were dealt first (see prioritize) and then the rest of the deck; until a card's image is ready, the empty
+ * card is drawn instead. A card whose image cannot be loaded is drawn as the empty card for good.
+ */
+public class CardAtlas {
+
+    /**
+     * The card number of the empty card.
+     */
+    public static final int EMPTY = -1;
+
+    /**
+     * The states of the image of a card.
+     */
+    private static final int NOT_LOADED = 0;
+    private static final int LOADING = 1;
+    private static final int LOADED = 2;
+    private static final int FAILED = 3;  // drawn as the empty card, and never loaded again
+
+    private final Logger logger;
+    private final BufferedImage atlas;
+    private final ReentrantLock atlasLock = new ReentrantLock();  // the loaders copy into the atlas while it's drawn from
+    private final int cellWidth;
+    private final int cellHeight;
+    private final int atlasColumns;
+    private final int emptyIndex;
+    private final String[] files;
+    private final AtomicIntegerArray states;
+    private final ConcurrentLinkedDeque<Integer> queue = new ConcurrentLinkedDeque<>();  // the cards to load, in order
+    private final IntConsumer onLoaded;
+    private final CountDownLatch loaded;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Loads the image of the empty card, and starts loading the images of all the cards of the configured deck.
+     *
+     * @param config   - the game configuration (the deck and the cell size).
+     * @param logger   - the logger.
+     * @param onLoaded - called with the card whenever the image of a card is ready (on a loader thread), or null.
+     */
+    public CardAtlas(Config config, Logger logger, IntConsumer onLoaded) {
+        this.logger = logger;
+        this.onLoaded = onLoaded;
+        cellWidth = config.cellWidth;
+        cellHeight = config.cellHeight;
+        emptyIndex = config.deckSize;
+
+        int count = config.deckSize + 1;
+        files = new String[count];
+        for (int i = 0; i < config.deckSize; i++)
+            files[i] = "cards/" + UserInterfaceSwing.intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png";
+        files[emptyIndex] = "cards/empty_card.png";
+        states = new AtomicIntegerArray(count);
+        loaded = new CountDownLatch(config.deckSize);
+
+        atlasColumns = (int) Math.ceil(Math.sqrt(count));
+        int atlasRows = (count + atlasColumns - 1) / atlasColumns;
+        atlas = createImage(atlasColumns * cellWidth, atlasRows * cellHeight);
+
+        load(emptyIndex);  // the placeholder
+        for (int card = 0; card < config.deckSize; card++) queue.addLast(card);
+        int loaders = Math.min(config.deckSize, Runtime.getRuntime().availableProcessors());
+        for (int i = 0; i < loaders; i++) {
+            Thread loader = new Thread(this::loadLoop, "card-loader-" + (i + 1));
+            loader.setDaemon(true);
+            loader.start();
+        }
+    }
+
+    /**
+     * Loads the image of a card before the cards that weren't prioritized yet. Called when the card is dealt.
+     *
+     * @param card - the card.
+     */
+    public void prioritize(int card) {
+        if (card != EMPTY && states.get(card) == NOT_LOADED) queue.addFirst(card);
+    }
+
+    /**
+     * @param card - the card.
+     * @return - true iff the image of the card is ready to be drawn.
+     */
+    public boolean isLoaded(int card) {
+        return states.get(card == EMPTY ? emptyIndex : card) == LOADED;
+    }
+
+    /**
+     * @return - the number of cards waiting to be loaded (a card may be counted twice if it was prioritized).
+     */
+    int queued() {
+        return queue.size();
+    }
+
+    /**
+     * Waits until all the card images are loaded (or failed to load).
+     */
+    public void awaitLoaded() throws InterruptedException {
+        loaded.await();
+    }
+
+    /**
+     * Draws a card, or the empty card if its image isn't ready yet.
+     *
+     * @param g    - where to draw.
+     * @param card - the card, or EMPTY.
+     * @param x    - the left of the cell.
+     * @param y    - the top of the cell.
+     */
+    public void draw(Graphics g, int card, int x, int y) {
+        int index = card == EMPTY ? emptyIndex : card;
+        int state = states.get(index);
+        if (state != LOADED) {
+            if (state == NOT_LOADED) prioritize(card);
+            index = emptyIndex;
+        }
+        int sx = x(index), sy = y(index);
+        atlasLock.lock();
+        try {
+            g.drawImage(atlas, x, y, x + cellWidth, y + cellHeight, sx, sy, sx + cellWidth, sy + cellHeight, null);
+        } finally {
+            atlasLock.unlock();
+        }
+    }
+
+    private int x(int index) {
+        return (index % atlasColumns) * cellWidth;
+    }
+
+    private int y(int index) {
+        return (index / atlasColumns) * cellHeight;
+    }
+
+    private void loadLoop() {
+        Integer card;
+        while ((card = queue.pollFirst()) != null) {  // a prioritized card may still be in the queue after it was loaded
+            try {
+                if (load(card)) {
+                    if (onLoaded != null) onLoaded.accept(card);
+                    countLoaded();
+                }
+            } catch (RuntimeException e) {
+                logger.severe("cannot load the image of card " + card + ": " + e);
+                states.set(card, FAILED);  // only the thread that was loading it gets here
+                countLoaded();  // the empty card is drawn instead
+            }
+        }
+    }
+
+    private void countLoaded() {
+        loaded.countDown();
+        if (loaded.getCount() == 0)
+            logger.info(() -> "loaded " + emptyIndex + " card images in " + (System.nanoTime() - startNanos) / 1000000 + "ms");
+    }
+
+    /**
+     * Decodes an image, scales it, and copies it into its cell of the atlas (only the copy holds the atlas lock).
+     *
+     * @param index - the index of the image.
+     * @return - false iff the image was already being loaded by another thread.
+     */
+    private boolean load(int index) {
+        if (!states.compareAndSet(index, NOT_LOADED, LOADING)) return false;
+        BufferedImage image = loadImageResource(files[index]);
+        BufferedImage scaled = createImage(cellWidth, cellHeight);  // scaled without the lock, so drawing never waits for it
+        Graphics2D g = scaled.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, cellWidth, cellHeight, null);
+        } finally {
+            g.dispose();
+        }
+        atlasLock.lock();
+        try {
+            g = atlas.createGraphics();
+            try {
+                g.setComposite(AlphaComposite.Src);  // a plain copy into the cell
+                g.drawImage(scaled, x(index), y(index), null);
+            } finally {
+                g.dispose();
+            }
+        } finally {
+            atlasLock.unlock();
+        }
+        states.set(index, LOADED);
+        return true;
+    }
+
+    /**
+     * @return - an image in the format of the screen when there is one (so Java2D can keep it in video memory),
+     *           otherwise a plain ARGB image.
+     */
+    private static BufferedImage createImage(int width, int height) {
+        if (!GraphicsEnvironment.isHeadless()) {
+            return GraphicsEnvironment.getLocalGraphicsEnvironment().getDefaultScreenDevice().getDefaultConfiguration()
+                    .createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    private static BufferedImage loadImageResource(String filename) {
+        try (InputStream is = CardAtlas.class.getClassLoader().getResourceAsStream(filename)) {
+            if (is == null)
+                throw new RuntimeException(new FileNotFoundException(filename));
+            return ImageIO.read(is);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package bguspl.set;
 
+import bguspl.set.ex.AiStrategy;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -21,6 +23,42 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * Whether log records are dropped when the log is written slower than the game logs (instead of waiting)
+     */
+    public final boolean logDropWhenFull;
+
+    /**
+     * The seed that all the randomness in the game is derived from (random if not configured)
+     */
+    public final long seed;
+
+    /**
+     * The file to write the binary game event log to (empty for no event log)
+     */
+    public final String eventLogFile;
+
+    /**
+     * Whether the players and computer players run on virtual threads (ThreadingMode=virtual, needs Java 21) instead of
+     * platform threads (ThreadingMode=platform)
+     */
+    public final boolean virtualThreads;
+
+    /**
+     * Whether to expose the game metrics through JMX
+     */
+    public final boolean metricsJmx;
+
+    /**
+     * The CSV file to dump the game metrics to periodically (empty for none)
+     */
+    public final String metricsFile;
+
+    /**
+     * The number of milliseconds between metrics dumps
+     */
+    public final long metricsIntervalMillis;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -56,6 +94,22 @@ public class Config {
      */
     public final boolean hints;
 
+    /**
+     * How the computer players choose the keys they press: "random" (random slots), "perfect" (the slots of a legal set
+     * on the table, right away) or "human" (the slots of a legal set, with a reaction time and mistakes)
+     */
+    public final String aiStrategy;
+
+    /**
+     * The average number of milliseconds a "human" computer player takes before each key press
+     */
+    public final long aiReactionMillis;
+
+    /**
+     * The probability that a "human" computer player presses a random slot instead of the one it meant to
+     */
+    public final double aiErrorRate;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -81,6 +135,12 @@ public class Config {
      */
     public final long tableDelayMillis;
 
+    /**
+     * Whether the table delay is a blocking sleep of the dealer while holding the slot (the original behavior), or only
+     * delays showing the card on the display, without holding any lock
+     */
+    public final boolean blockingTableDelay;
+
     /**
      * The number of milliseconds to pause at the end of the game before closing
      */
@@ -132,6 +192,48 @@ public class Config {
      */
     public final int fontSize;
 
+    /**
+     * The maximum number of times per second the screen is redrawn
+     */
+    public final int uiFps;
+
+    /**
+     * How the game is displayed, one or more of: swing (a window, or the log if there is no display), headless
+     * (nothing), recording (the ui calls are recorded to uiRecordingFile) and spectator (streamed to spectators over
+     * WebSocket on spectatorHost:spectatorPort)
+     */
+    public final String[] uiModes;
+
+    /**
+     * The number of ui calls a display can fall behind (when there are several) before it is resynced
+     */
+    public final int uiQueueCapacity;
+
+    /**
+     * The file the ui calls are recorded to with UiMode=recording
+     */
+    public final String uiRecordingFile;
+
+    /**
+     * The maximum size of the ui recording file, in bytes
+     */
+    public final long uiRecordingMaxBytes;
+
+    /**
+     * The address the spectator server listens on with UiMode=spectator (the loopback address by default)
+     */
+    public final String spectatorHost;
+
+    /**
+     * The port the spectator server listens on (0 for any free port)
+     */
+    public final int spectatorPort;
+
+    /**
+     * The number of messages a spectator can fall behind before it is disconnected
+     */
+    public final int spectatorQueueCapacity;
+
     /**
      * The scancodes of the keyboard input data for each player
      * Notes:
@@ -155,7 +257,7 @@ public class Config {
      * @param filename - the name of the configuration file.
      * @return - a properties object with the configuration file contents.
      */
-    private static Properties loadProperties(String filename, Logger logger) {
+    static Properties loadProperties(String filename, Logger logger) {
 
         Properties properties = new Properties();
 
@@ -186,6 +288,11 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        String logOverflowPolicy = properties.getProperty("LogOverflowPolicy", "block").trim().toLowerCase();
+        if (!logOverflowPolicy.equals("block") && !logOverflowPolicy.equals("drop"))
+            logger.severe("invalid log overflow policy: " + logOverflowPolicy + " (blocking)");
+        logDropWhenFull = logOverflowPolicy.equals("drop");
+        Main.setLogOverflowPolicy(logger, logDropWhenFull);
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
@@ -193,6 +300,23 @@ public class Config {
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
 
+        // randomness and replay
+        String seedString = properties.getProperty("Seed", "").trim();
+        seed = seedString.isEmpty() ? System.nanoTime() ^ Double.doubleToLongBits(Math.random()) : Long.parseLong(seedString);
+        logger.info("game seed: " + seed + " (set Seed=" + seed + " to repeat this game)");
+        eventLogFile = properties.getProperty("EventLogFile", "").trim();
+
+        // threading
+        String threadingMode = properties.getProperty("ThreadingMode", "platform").trim().toLowerCase();
+        if (!threadingMode.equals("platform") && !threadingMode.equals("virtual"))
+            logger.severe("invalid threading mode: " + threadingMode + " (using platform threads)");
+        virtualThreads = threadingMode.equals("virtual");
+
+        // metrics
+        metricsJmx = Boolean.parseBoolean(properties.getProperty("MetricsJmx", "True"));
+        metricsFile = properties.getProperty("MetricsFile", "").trim();
+        metricsIntervalMillis = (long) (Double.parseDouble(properties.getProperty("MetricsIntervalSeconds", "10")) * 1000.0);
+
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
@@ -204,11 +328,20 @@ public class Config {
         players = humanPlayers + computerPlayers;
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        String strategy = properties.getProperty("AiStrategy", "random").trim().toLowerCase();
+        if (!Arrays.asList(AiStrategy.NAMES).contains(strategy)) {
+            logger.severe("invalid AI strategy: " + strategy + " (using random)");
+            strategy = "random";
+        }
+        aiStrategy = strategy;
+        aiReactionMillis = (long) (Double.parseDouble(properties.getProperty("AiReactionSeconds", "0.5")) * 1000.0);
+        aiErrorRate = Double.parseDouble(properties.getProperty("AiErrorRate", "0.1"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
+        blockingTableDelay = Boolean.parseBoolean(properties.getProperty("BlockingTableDelay", "False"));
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
 
         // ui settings
@@ -224,6 +357,20 @@ public class Config {
         playerCellWidth = Integer.parseInt(properties.getProperty("PlayerCellWidth", "300"));
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
+        uiFps = Math.max(1, Integer.parseInt(properties.getProperty("UiFps", "30")));
+        uiModes = Arrays.stream(properties.getProperty("UiMode", "swing").toLowerCase().split(","))
+                .map(String::trim).filter(mode -> {
+                    boolean valid = mode.equals("swing") || mode.equals("headless") || mode.equals("recording")
+                            || mode.equals("spectator");
+                    if (!valid) logger.severe("invalid ui mode: " + mode + " (ignored)");
+                    return valid;
+                }).distinct().toArray(String[]::new);
+        uiQueueCapacity = Math.max(1, Integer.parseInt(properties.getProperty("UiQueueCapacity", "1024")));
+        uiRecordingFile = properties.getProperty("UiRecordingFile", "ui_recording.bin").trim();
+        uiRecordingMaxBytes = (long) (Double.parseDouble(properties.getProperty("UiRecordingMaxMegabytes", "64")) * 1024 * 1024);
+        spectatorHost = properties.getProperty("SpectatorHost", "127.0.0.1").trim();
+        spectatorPort = Integer.parseInt(properties.getProperty("SpectatorPort", "8765").trim());
+        spectatorQueueCapacity = Math.max(1, Integer.parseInt(properties.getProperty("SpectatorQueueCapacity", "4096")));
 
         // keyboard input data
         playerKeys = new int[players][rows * columns];
@@ -244,4 +391,25 @@ public class Config {
     public int[] playerKeys(int player) {
         return playerKeys[player];
     }
+
+    /**
+     * The ids of the sources of randomness in the game (see seedFor), the id of player i is PLAYER_RANDOM + i.
+     */
+    public static final long DECK_RANDOM = 0;
+    public static final long SPIN_RANDOM = 1;
+    public static final long PLAYER_RANDOM = 2;
+
+    /**
+     * Derives a seed for one source of randomness in the game from the game seed, so that every source gets its own
+     * independent sequence (SplitMix64 finalizer).
+     *
+     * @param stream - the id of the source of randomness.
+     * @return - the seed for that source.
+     */
+    public long seedFor(long stream) {
+        long z = seed + (stream + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
 }
@@ -8,6 +8,7 @@ public class Env {
     public final Config config;
     public final UserInterface ui;
     public final Util util;
+    public final Metrics metrics = new Metrics();
 
     public Env(Logger logger, Config config, UserInterface ui, Util util) {
         this.logger = logger;
@@ -0,0 +1,255 @@
+package bguspl.set;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A compact binary log of the game events, written by the dealer and the table so a game can be replayed
+ * (see the Replay class).
+ * <p>
+ * Format: a header (magic, version, featureSize, featureCount, rows, columns, players, seed) followed by records of
+ * [type byte][nanoseconds since the previous record][arguments], where all numbers except the header are varints.
+ */
+public class EventLog implements AutoCloseable {
+
+    public static final int MAGIC = 0x5345544c; // "SETL"
+    public static final int VERSION = 1;
+
+    /**
+     * Event types (arguments in parentheses).
+     */
+    public static final int CARD_PLACED = 1;   // (card, slot)
+    public static final int CARD_REMOVED = 2;  // (slot)
+    public static final int TOKEN_PLACED = 3;  // (player, slot)
+    public static final int TOKEN_REMOVED = 4; // (player, slot)
+    public static final int SET_CLAIMED = 5;   // (player, featureSize cards)
+    public static final int PENALTY = 6;       // (player)
+
+    /**
+     * An event log that writes nothing.
+     */
+    public static final EventLog DISABLED = new EventLog(null, null);
+
+    private final DataOutputStream out;
+    private final Logger logger;
+    private long lastEventNanos;
+
+    /**
+     * Serializes the writers (a java.util.concurrent lock, so a virtual thread waiting for it doesn't pin its carrier).
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private EventLog(OutputStream out, Logger logger) {
+        this.out = out == null ? null : new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+        this.logger = logger;
+        this.lastEventNanos = System.nanoTime();
+    }
+
+    /**
+     * Opens the event log configured in config.eventLogFile.
+     *
+     * @param config - the game configuration.
+     * @param logger - the logger to report errors to.
+     * @return - the event log, or DISABLED if no file is configured or it cannot be opened.
+     */
+    public static EventLog open(Config config, Logger logger) {
+        if (config.eventLogFile.isEmpty()) return DISABLED;
+        try {
+            EventLog log = new EventLog(Files.newOutputStream(Paths.get(config.eventLogFile)), logger);
+            log.out.writeInt(MAGIC);
+            log.out.writeByte(VERSION);
+            log.out.writeInt(config.featureSize);
+            log.out.writeInt(config.featureCount);
+            log.out.writeInt(config.rows);
+            log.out.writeInt(config.columns);
+            log.out.writeInt(config.players);
+            log.out.writeLong(config.seed);
+            return log;
+        } catch (IOException e) {
+            logger.severe("cannot open event log " + config.eventLogFile + ": " + e.getMessage());
+            return DISABLED;
+        }
+    }
+
+    public boolean isEnabled() {
+        return out != null;
+    }
+
+    private void writeVarint(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private void writeHeader(int type) throws IOException {
+        long now = System.nanoTime();
+        out.writeByte(type);
+        writeVarint(Math.max(0, now - lastEventNanos));
+        lastEventNanos = now;
+    }
+
+    private void fail(IOException e) {
+        logger.severe("cannot write to event log: " + e.getMessage());
+    }
+
+    /**
+     * Logs an event with two arguments.
+     */
+    public void log(int type, int first, int second) {
+        if (out == null) return;
+        lock.lock();
+        try {
+            writeHeader(type);
+            writeVarint(first);
+            writeVarint(second);
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Logs an event with one argument.
+     */
+    public void log(int type, int argument) {
+        if (out == null) return;
+        lock.lock();
+        try {
+            writeHeader(type);
+            writeVarint(argument);
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Logs an event with a player and an array of cards.
+     */
+    public void log(int type, int player, int[] cards) {
+        if (out == null) return;
+        lock.lock();
+        try {
+            writeHeader(type);
+            writeVarint(player);
+            for (int card : cards)
+                writeVarint(card);
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        if (out == null) return;
+        lock.lock();
+        try {
+            out.close();
+        } catch (IOException e) {
+            fail(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Reads an event log written by EventLog.
+     */
+    public static class Reader implements AutoCloseable {
+
+        public final int featureSize;
+        public final int featureCount;
+        public final int rows;
+        public final int columns;
+        public final int players;
+        public final long seed;
+
+        private final DataInputStream in;
+
+        /**
+         * The last event that was read: its type, the nanoseconds since the previous event and its arguments.
+         */
+        public int type;
+        public long deltaNanos;
+        public final int[] arguments;
+        public int argumentCount;
+
+        public Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(in);
+            if (this.in.readInt() != MAGIC) throw new IOException("not an event log");
+            int version = this.in.readByte();
+            if (version != VERSION) throw new IOException("unsupported event log version " + version);
+            featureSize = this.in.readInt();
+            featureCount = this.in.readInt();
+            rows = this.in.readInt();
+            columns = this.in.readInt();
+            players = this.in.readInt();
+            seed = this.in.readLong();
+            arguments = new int[Math.max(2, featureSize + 1)];
+        }
+
+        private long readVarint() throws IOException {
+            long value = 0;
+            for (int shift = 0; ; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return value;
+            }
+        }
+
+        /**
+         * Reads the next event into type, deltaNanos and arguments.
+         *
+         * @return - false iff there are no more events.
+         */
+        public boolean next() throws IOException {
+            int b = in.read();
+            if (b < 0) return false;
+            try {
+                type = b;
+                deltaNanos = readVarint();
+                switch (type) {
+                    case CARD_PLACED:
+                    case TOKEN_PLACED:
+                    case TOKEN_REMOVED:
+                        argumentCount = 2;
+                        break;
+                    case CARD_REMOVED:
+                    case PENALTY:
+                        argumentCount = 1;
+                        break;
+                    case SET_CLAIMED:
+                        argumentCount = 1 + featureSize;
+                        break;
+                    default:
+                        throw new IOException("unknown event type " + type);
+                }
+                for (int i = 0; i < argumentCount; i++)
+                    arguments[i] = (int) readVarint();
+                return true;
+            } catch (EOFException e) {
+                return false; // the game was cut off in the middle of writing an event
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package bguspl.set;
+
+import java.lang.reflect.Method;
+
+/**
+ * Creates the threads of the players and the computer players: platform threads, or virtual threads with
+ * ThreadingMode=virtual. The project is built for Java 8, so virtual threads are created through reflection and need a
+ * Java 21 runtime; on older runtimes platform threads are used instead.
+ */
+public class GameThreads {
+
+    /**
+     * Thread.ofVirtual(), Thread.Builder.name(String) and Thread.Builder.unstarted(Runnable), or null before Java 21.
+     */
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method UNSTARTED;
+
+    static {
+        Method ofVirtual = null, name = null, unstarted = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class);
+            unstarted = builder.getMethod("unstarted", Runnable.class);
+        } catch (ReflectiveOperationException ignored) {
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        UNSTARTED = unstarted;
+    }
+
+    private static volatile boolean warned = false;
+
+    /**
+     * @return - true iff the runtime supports virtual threads.
+     */
+    public static boolean virtualThreadsAvailable() {
+        return UNSTARTED != null;
+    }
+
+    /**
+     * Creates a thread (without starting it).
+     *
+     * @param env  - the game environment (config.virtualThreads selects the kind of thread).
+     * @param task - what the thread runs.
+     * @param name - the name of the thread.
+     * @return - a virtual thread if configured and supported, otherwise a platform thread.
+     */
+    public static Thread newThread(Env env, Runnable task, String name) {
+        if (env.config.virtualThreads) {
+            if (virtualThreadsAvailable()) {
+                try {
+                    Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name);
+                    return (Thread) UNSTARTED.invoke(builder, task);
+                } catch (ReflectiveOperationException e) {
+                    env.logger.severe("cannot create a virtual thread: " + e);
+                }
+            } else if (!warned) {
+                warned = true;
+                env.logger.severe("virtual threads need Java 21 (running on " + System.getProperty("java.version") + "), using platform threads");
+            }
+        }
+        return new Thread(task, name);
+    }
+}
@@ -7,9 +7,11 @@ import bguspl.set.ex.Table;
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.List;
 import java.util.logging.*;
 
 /**
@@ -46,16 +48,7 @@ public class Main {
         Util util = new UtilImpl(config);
 
         Player[] players = new Player[config.players];
-        UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
-        }
-        ui = new UserInterfaceDecorator(logger, util, ui);
+        UserInterface ui = createUserInterface(config, util, players);
 
         Env env = new Env(logger, config, ui, util);
 
@@ -65,6 +58,8 @@ public class Main {
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
 
+        env.metrics.start(config, logger);
+
         // start the dealer thread
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
         dealerThread.startWithLog();
@@ -79,19 +74,65 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
+            env.metrics.stop();
             for (Handler h : logger.getHandlers()) h.flush();
         }
     }
 
+    /**
+     * Creates the user interface of the configured UiMode: nothing for headless, and each of the other modes on its
+     * own thread (through a MultiplexUserInterface) if there are several.
+     */
+    private static UserInterface createUserInterface(Config config, Util util, Player[] players) {
+        List<UserInterface> uis = new ArrayList<>();
+        for (String mode : config.uiModes) {
+            if (mode.equals("swing")) {
+                uis.add(createSwingUserInterface(config, util, players));
+            } else if (mode.equals("recording")) {
+                try {
+                    uis.add(new RecordingUserInterface(config, logger));
+                } catch (IOException e) {
+                    logger.severe("cannot create ui recording " + config.uiRecordingFile + ": " + e.getMessage());
+                }
+            } else if (mode.equals("spectator")) {
+                try {
+                    uis.add(new SpectatorServer(config, logger));
+                } catch (IOException e) {
+                    logger.severe("cannot start spectator server on " + config.spectatorHost + ":"
+                            + config.spectatorPort + ": " + e.getMessage());
+                }
+            }
+        }
+        if (config.humanPlayers > 0 && !Arrays.asList(config.uiModes).contains("swing"))
+            logger.severe("warning: running with human players with no user interface");
+
+        if (uis.isEmpty()) return new HeadlessUserInterface();
+        if (uis.size() == 1) return uis.get(0);
+        return new MultiplexUserInterface(config, logger, config.uiQueueCapacity, uis.toArray(new UserInterface[0]));
+    }
+
+    private static UserInterface createSwingUserInterface(Config config, Util util, Player[] players) {
+        UserInterface ui = null;
+        try {
+            ui = new UserInterfaceSwing(logger, config, players);
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            logger.severe("error creating swing user interface: " + e.getMessage());
+            logger.severe("will try to run without user interface");
+            if (config.humanPlayers > 0)
+                logger.severe("warning: running with human players with no user interface");
+        }
+        return new UserInterfaceDecorator(logger, util, ui);
+    }
+
     private static Logger initLogger() {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        Handler handler;
         try {
             //noinspection ResultOfMethodCallIgnored
             new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            handler = new AsyncLogHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -108,8 +149,9 @@ public class Main {
         Handler[] handlers = logger.getHandlers();
         if (handlers != null) Arrays.stream(handlers).forEach(h -> h.setFormatter(new SimpleFormatter() {
             // default format (with timestamp)  = "[%1$tF %1$tT] [%2$-7s] %3$s%n";
+            // not synchronized: the async handler formats on its writer thread only
             @Override
-            public synchronized String format(LogRecord lr) {
+            public String format(LogRecord lr) {
                 return String.format(format, new Date(lr.getMillis()),
                         lr.getLevel().getLocalizedName(), lr.getMessage()
                 );
@@ -117,4 +159,10 @@ public class Main {
         }));
         logger.setLevel(level);
     }
+
+    public static void setLogOverflowPolicy(Logger logger, boolean dropWhenFull) {
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null) for (Handler h : handlers)
+            if (h instanceof AsyncLogHandler) ((AsyncLogHandler) h).setDropWhenFull(dropWhenFull);
+    }
 }
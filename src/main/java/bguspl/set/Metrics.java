@@ -0,0 +1,207 @@
+package bguspl.set;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.logging.Logger;
+
+/**
+ * Named counters, gauges and latency histograms of the game's hot paths. Updating a metric is a LongAdder increment or
+ * a lock-free histogram record, so it can be done on every event. While started, the metrics are exposed through JMX
+ * (as bguspl.set:type=Metrics) and dumped to a CSV file periodically.
+ */
+public class Metrics {
+
+    private final ConcurrentSkipListMap<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+    private final ConcurrentSkipListMap<String, LatencyHistogram> histograms = new ConcurrentSkipListMap<>();
+
+    private ScheduledExecutorService dumper;
+    private PrintWriter csv;
+    private String csvHeader;
+    private ObjectName mbeanName;
+    private Logger logger;
+
+    /**
+     * @param name - the name of the counter.
+     * @return - the counter with that name (created if needed).
+     */
+    public LongAdder counter(String name) {
+        return counters.computeIfAbsent(name, k -> new LongAdder());
+    }
+
+    /**
+     * @param name - the name of the histogram.
+     * @return - the latency histogram (of nanoseconds) with that name (created if needed).
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, k -> new LatencyHistogram());
+    }
+
+    /**
+     * Adds a value that is read when the metrics are read (replacing the gauge with that name, if there was one).
+     *
+     * @param name  - the name of the gauge.
+     * @param value - reads the current value.
+     */
+    public void gauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * @return - the current value of every metric, by name. A histogram has the values name.count, name.mean_us,
+     *           name.p50_us, name.p99_us and name.max_us.
+     */
+    public Map<String, Long> snapshot() {
+        Map<String, Long> values = new LinkedHashMap<>();
+        counters.forEach((name, counter) -> values.put(name, counter.sum()));
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        histograms.forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.count());
+            values.put(name + ".mean_us", (long) (histogram.mean() / 1000));
+            values.put(name + ".p50_us", histogram.percentile(50) / 1000);
+            values.put(name + ".p99_us", histogram.percentile(99) / 1000);
+            values.put(name + ".max_us", histogram.max() / 1000);
+        });
+        return values;
+    }
+
+    /**
+     * Registers the metrics with JMX (if configured), and starts dumping them to the metrics file every interval
+     * (if configured).
+     *
+     * @param config - the game configuration.
+     * @param logger - the logger.
+     */
+    public synchronized void start(Config config, Logger logger) {
+        this.logger = logger;
+        if (config.metricsJmx) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName("bguspl.set:type=Metrics");
+                if (server.isRegistered(name)) server.unregisterMBean(name);  // of an earlier game
+                server.registerMBean(new MetricsMBean(), name);
+                mbeanName = name;
+            } catch (Exception e) {
+                logger.severe("cannot register the metrics with JMX: " + e);
+            }
+        }
+
+        if (!config.metricsFile.isEmpty() && config.metricsIntervalMillis > 0) {
+            try {
+                csv = new PrintWriter(new FileWriter(config.metricsFile));
+            } catch (IOException e) {
+                logger.severe("cannot open metrics file " + config.metricsFile + ": " + e.getMessage());
+                return;
+            }
+            dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metrics-dumper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            dumper.scheduleAtFixedRate(this::dump, config.metricsIntervalMillis, config.metricsIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Dumps the metrics one last time, and stops exposing them.
+     */
+    public synchronized void stop() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+            dump();
+            csv.close();
+            csv = null;
+        }
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (Exception e) {
+                logger.severe("cannot unregister the metrics from JMX: " + e);
+            }
+            mbeanName = null;
+        }
+    }
+
+    /**
+     * Writes a line with the current time and all the values to the CSV file (and a header line before it, if the
+     * metrics changed since the last header).
+     */
+    private synchronized void dump() {
+        if (csv == null) return;
+        Map<String, Long> values = snapshot();
+        String header = "time_ms," + String.join(",", values.keySet());
+        if (!header.equals(csvHeader)) {
+            csv.println(header);
+            csvHeader = header;
+        }
+        StringBuilder line = new StringBuilder().append(System.currentTimeMillis());
+        values.values().forEach(value -> line.append(',').append(value));
+        csv.println(line);
+        csv.flush();
+    }
+
+    /**
+     * Exposes every value of the snapshot as a read-only long attribute.
+     */
+    private class MetricsMBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Long value = snapshot().get(attribute);
+            if (value == null) throw new AttributeNotFoundException(attribute);
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Long> values = snapshot();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes)
+                if (values.containsKey(attribute)) list.add(new Attribute(attribute, values.get(attribute)));
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException(attribute.getName() + " is read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+            throw new ReflectionException(new NoSuchMethodException(actionName));
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            MBeanAttributeInfo[] attributes = snapshot().keySet().stream()
+                    .map(name -> new MBeanAttributeInfo(name, "long", name, true, false, false))
+                    .toArray(MBeanAttributeInfo[]::new);
+            return new MBeanInfo(Metrics.class.getName(), "Set game metrics", attributes, null, null, null);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package bguspl.set;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * An implementation of the UserInterface interface that forwards every call to several user interfaces (sinks), each
+ * on its own thread, so a slow sink never stalls the game threads. A call is put in each sink's bounded lock-free queue
+ * and returns right away:
+ * <ul>
+ * <li>Calls that overwrite a value (setCountdown, setElapsed, setFreeze and setScore) are coalesced: only a marker
+ * of the value is queued, once until the sink reads it, and the sink gets the latest value.</li>
+ * <li>The other calls are queued in order. If a sink falls so far behind that its queue is full, its queue is
+ * dropped and it is resynced instead: it gets the current state of the whole display (the cards, tokens, scores,
+ * freezes, timer and winners), which this class keeps up to date.</li>
+ * </ul>
+ */
+public class MultiplexUserInterface implements UserInterface {
+
+    private static final int NO_CARD = -1;
+    private static final long DISPOSE_WAIT_MILLIS = 5000;
+
+    /**
+     * Coalesced values: the countdown, the elapsed time, and then a freeze and a score for every player.
+     */
+    private static final int COUNTDOWN = 0;
+    private static final int ELAPSED = 1;
+    private static final int FIRST_FREEZE = 2;
+
+    private final Logger logger;
+    private final int players;
+    private final int tableSize;
+
+    /**
+     * The current state of the display (updated before the calls are queued, so a resync never misses a call).
+     */
+    private final AtomicIntegerArray cards;   // by slot, NO_CARD if empty
+    private final AtomicIntegerArray tokens;  // 1 iff the player has a token on the slot, by slot * players + player
+    private final AtomicLongArray values;     // the coalesced values, see COUNTDOWN (which is millies << 1 | warn)
+    private volatile boolean elapsedTimer = false;  // which timer was set last
+    private volatile int[] winners;  // null until announced
+
+    private final List<Consumer<UserInterface>> valueSetters;  // a call that sets each coalesced value to its latest
+    private final Sink[] sinks;
+
+    /**
+     * @param config        - the game configuration (the number of players and the table size).
+     * @param logger        - the logger.
+     * @param queueCapacity - the number of calls a sink can fall behind before it is resynced.
+     * @param uis           - the sinks.
+     */
+    public MultiplexUserInterface(Config config, Logger logger, int queueCapacity, UserInterface... uis) {
+        this.logger = logger;
+        players = config.players;
+        tableSize = config.tableSize;
+        cards = new AtomicIntegerArray(tableSize);
+        for (int slot = 0; slot < tableSize; slot++) cards.set(slot, NO_CARD);
+        tokens = new AtomicIntegerArray(tableSize * players);
+        values = new AtomicLongArray(FIRST_FREEZE + 2 * players);
+
+        valueSetters = new ArrayList<>(values.length());
+        valueSetters.add(ui -> ui.setCountdown(values.get(COUNTDOWN) >> 1, (values.get(COUNTDOWN) & 1) != 0));
+        valueSetters.add(ui -> ui.setElapsed(values.get(ELAPSED)));
+        for (int player = 0; player < players; player++) {
+            int id = player;
+            valueSetters.add(ui -> ui.setFreeze(id, values.get(FIRST_FREEZE + id)));
+        }
+        for (int player = 0; player < players; player++) {
+            int id = player;
+            valueSetters.add(ui -> ui.setScore(id, (int) values.get(FIRST_FREEZE + players + id)));
+        }
+
+        sinks = new Sink[uis.length];
+        for (int i = 0; i < uis.length; i++) sinks[i] = new Sink(uis[i], queueCapacity, "ui-sink-" + (i + 1));
+    }
+
+    /**
+     * @param sink - the index of the sink.
+     * @return - the number of times the sink fell behind and was resynced.
+     */
+    public long resyncs(int sink) {
+        return sinks[sink].resyncs.get();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        cards.set(slot, card);
+        forward(ui -> ui.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        cards.set(slot, NO_CARD);
+        forward(ui -> ui.removeCard(slot));
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        tokens.set(slot * players + player, 1);
+        forward(ui -> ui.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        for (int i = 0; i < tokens.length(); i++) tokens.set(i, 0);
+        forward(UserInterface::removeTokens);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        for (int player = 0; player < players; player++) tokens.set(slot * players + player, 0);
+        forward(ui -> ui.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        tokens.set(slot * players + player, 0);
+        forward(ui -> ui.removeToken(player, slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        values.set(COUNTDOWN, millies << 1 | (warn ? 1 : 0));
+        elapsedTimer = false;
+        coalesce(COUNTDOWN);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        values.set(ELAPSED, millies);
+        elapsedTimer = true;
+        coalesce(ELAPSED);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        values.set(FIRST_FREEZE + player, millies);
+        coalesce(FIRST_FREEZE + player);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        values.set(FIRST_FREEZE + players + player, score);
+        coalesce(FIRST_FREEZE + players + player);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        int[] ids = players.clone();
+        winners = ids;
+        forward(ui -> ui.announceWinner(ids));
+    }
+
+    /**
+     * Disposes of every sink (after its queued calls), waiting a while for the sinks to finish.
+     */
+    @Override
+    public void dispose() {
+        for (Sink sink : sinks) sink.dispose();
+        long deadline = System.currentTimeMillis() + DISPOSE_WAIT_MILLIS;
+        for (Sink sink : sinks) {
+            try {
+                sink.thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (sink.thread.isAlive()) logger.severe(sink.thread.getName() + " didn't finish disposing in time");
+        }
+    }
+
+    private void forward(Consumer<UserInterface> call) {
+        for (Sink sink : sinks) sink.offer(call);
+    }
+
+    private void coalesce(int value) {
+        for (Sink sink : sinks)
+            if (sink.dirty.compareAndSet(value, 0, 1)) sink.offer(sink.setters.get(value));  // not queued yet
+    }
+
+    /**
+     * A user interface with its queue of calls and the thread that makes them.
+     */
+    private class Sink {
+
+        private final UserInterface ui;
+        private final int capacity;
+        private final ConcurrentLinkedQueue<Consumer<UserInterface>> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();  // the number of calls in the queue
+        private final AtomicIntegerArray dirty = new AtomicIntegerArray(values.length());  // 1 iff the value's setter is queued
+        private final List<Consumer<UserInterface>> setters;  // sets a value to its latest, once it's no longer dirty
+        private final AtomicBoolean resync = new AtomicBoolean();
+        private final AtomicLong resyncs = new AtomicLong();
+        private final Consumer<UserInterface> disposeCall = UserInterface::dispose;
+        private final Thread thread;
+
+        private Sink(UserInterface ui, int capacity, String name) {
+            this.ui = ui;
+            this.capacity = capacity;
+            setters = new ArrayList<>(values.length());
+            for (int i = 0; i < values.length(); i++) {
+                int value = i;
+                setters.add(sinkUi -> {
+                    dirty.set(value, 0);  // before reading the value, so a newer value is queued again
+                    valueSetters.get(value).accept(sinkUi);
+                });
+            }
+            thread = new Thread(this::drain, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void offer(Consumer<UserInterface> call) {
+            if (size.incrementAndGet() > capacity) {
+                size.decrementAndGet();
+                resync.set(true);  // the state this call made is already in the snapshot
+            } else {
+                queue.offer(call);
+            }
+            LockSupport.unpark(thread);
+        }
+
+        private void dispose() {
+            size.incrementAndGet();
+            queue.offer(disposeCall);  // even if the queue is full
+            LockSupport.unpark(thread);
+        }
+
+        private void drain() {
+            while (true) {
+                if (resync.getAndSet(false)) resync();
+                Consumer<UserInterface> call = queue.poll();
+                if (call == null) {
+                    LockSupport.park(this);  // unparked by offer()
+                    continue;
+                }
+                size.decrementAndGet();
+                if (call == disposeCall) {
+                    call.accept(ui);
+                    return;
+                }
+                try {
+                    call.accept(ui);
+                } catch (RuntimeException e) {
+                    logger.severe(thread.getName() + " failed: " + e);
+                }
+            }
+        }
+
+        /**
+         * Drops the queued calls and sends the current state instead. Every call whose state change happened before
+         * the snapshot is read was either dropped here or is still queued and made again (the calls set state, so
+         * making one again is harmless).
+         */
+        private void resync() {
+            resyncs.incrementAndGet();
+            logger.warning(() -> thread.getName() + " fell behind, resyncing it");
+            boolean disposed = false;
+            Consumer<UserInterface> call;
+            while ((call = queue.poll()) != null) {
+                size.decrementAndGet();
+                disposed |= call == disposeCall;
+            }
+            for (int i = 0; i < dirty.length(); i++) dirty.set(i, 0);
+
+            try {
+                ui.removeTokens();
+                for (int slot = 0; slot < tableSize; slot++) {
+                    int card = cards.get(slot);
+                    if (card == NO_CARD) ui.removeCard(slot);
+                    else ui.placeCard(card, slot);
+                    for (int player = 0; player < players; player++)
+                        if (tokens.get(slot * players + player) == 1) ui.placeToken(player, slot);
+                }
+                valueSetters.get(elapsedTimer ? ELAPSED : COUNTDOWN).accept(ui);
+                for (int value = FIRST_FREEZE; value < valueSetters.size(); value++) valueSetters.get(value).accept(ui);
+                int[] ids = winners;
+                if (ids != null) ui.announceWinner(ids);
+            } catch (RuntimeException e) {
+                logger.severe(thread.getName() + " failed to resync: " + e);
+            }
+            if (disposed) dispose();  // keeps its place: after everything
+        }
+    }
+}
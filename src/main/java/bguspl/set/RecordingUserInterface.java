@@ -0,0 +1,228 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * An implementation of the UserInterface interface that displays nothing, and records every call as a fixed size
+ * record in a memory-mapped file, for inspecting a game offline (see main). Recording a call is a few writes to
+ * memory with no locking, formatting or system calls: each call reserves its own record with an atomic increment.
+ * <p>
+ * Format: a header (magic, version, record size, players, table size, start time in epoch millis) followed by records
+ * of [nanoseconds since the start (long)][type (byte)][warn (byte)][player (short)][slot (int)][value (long)], where
+ * a record of type 0 was never written. The file is truncated to the written records when the ui is disposed.
+ */
+public class RecordingUserInterface implements UserInterface {
+
+    public static final int MAGIC = 0x53455455; // "SETU"
+    public static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RECORD_SIZE = 24;
+
+    /**
+     * Record types (the fields they use in parentheses).
+     */
+    private static final byte PLACE_CARD = 1;     // (slot, value = card)
+    private static final byte REMOVE_CARD = 2;    // (slot)
+    private static final byte PLACE_TOKEN = 3;    // (player, slot)
+    private static final byte REMOVE_TOKENS = 4;  // (slot, -1 for all the slots)
+    private static final byte REMOVE_TOKEN = 5;   // (player, slot)
+    private static final byte COUNTDOWN = 6;      // (warn, value = millis)
+    private static final byte ELAPSED = 7;        // (value = millis)
+    private static final byte FREEZE = 8;         // (player, value = millis)
+    private static final byte SCORE = 9;          // (player, value = score)
+    private static final byte WINNER = 10;        // (player), one record for each winner
+    private static final byte DISPOSE = 11;       // ()
+    private static final String[] TYPE_NAMES = {"?", "placeCard", "removeCard", "placeToken", "removeTokens",
+            "removeToken", "setCountdown", "setElapsed", "setFreeze", "setScore", "announceWinner", "dispose"};
+
+    private final Logger logger;
+    private final String fileName;
+    private final MappedByteBuffer buffer;  // only absolute puts, so the threads don't share a position
+    private final long capacity;  // the number of records that fit in the file
+    private final AtomicLong records = new AtomicLong();  // the number of records reserved
+    private final AtomicLong written = new AtomicLong();  // the number of records written
+    private final AtomicInteger writing = new AtomicInteger();  // the number of calls between the disposed check and their write
+    private final long startNanos = System.nanoTime();
+    private volatile boolean disposed = false;
+
+    /**
+     * Creates the recording file configured in config.uiRecordingFile.
+     *
+     * @param config - the game configuration.
+     * @param logger - the logger.
+     * @throws IOException - if the file cannot be created.
+     */
+    public RecordingUserInterface(Config config, Logger logger) throws IOException {
+        this.logger = logger;
+        this.fileName = config.uiRecordingFile;
+        long size = Math.min(Math.max(config.uiRecordingMaxBytes, HEADER_SIZE + RECORD_SIZE), Integer.MAX_VALUE);
+        capacity = (size - HEADER_SIZE) / RECORD_SIZE;
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+            file.setLength(0);
+            buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + capacity * RECORD_SIZE);
+        }  // the mapping stays valid after the file is closed
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, VERSION);
+        buffer.putInt(8, RECORD_SIZE);
+        buffer.putInt(12, config.players);
+        buffer.putInt(16, config.tableSize);
+        buffer.putLong(24, System.currentTimeMillis());
+    }
+
+    private void record(byte type, boolean warn, int player, int slot, long value) {
+        writing.incrementAndGet();
+        try {
+            if (!disposed) write(type, warn, player, slot, value);  // checked after announcing the write, see dispose
+        } finally {
+            writing.decrementAndGet();
+        }
+    }
+
+    private void write(byte type, boolean warn, int player, int slot, long value) {
+        long index = records.getAndIncrement();
+        if (index >= capacity) {
+            if (index == capacity) logger.severe("ui recording " + fileName + " is full, no more ui calls are recorded");
+            return;
+        }
+        int position = (int) (HEADER_SIZE + index * RECORD_SIZE);
+        buffer.putLong(position, System.nanoTime() - startNanos);
+        buffer.put(position + 9, (byte) (warn ? 1 : 0));
+        buffer.putShort(position + 10, (short) player);
+        buffer.putInt(position + 12, slot);
+        buffer.putLong(position + 16, value);
+        buffer.put(position + 8, type);  // last, so a record that is still being written reads as unwritten
+        written.incrementAndGet();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        record(PLACE_CARD, false, -1, slot, card);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        record(REMOVE_CARD, false, -1, slot, 0);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        record(PLACE_TOKEN, false, player, slot, 0);
+    }
+
+    @Override
+    public void removeTokens() {
+        record(REMOVE_TOKENS, false, -1, -1, 0);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        record(REMOVE_TOKENS, false, -1, slot, 0);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        record(REMOVE_TOKEN, false, player, slot, 0);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        record(COUNTDOWN, warn, -1, -1, millies);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        record(ELAPSED, false, -1, -1, millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        record(FREEZE, false, player, -1, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        record(SCORE, false, player, -1, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        for (int player : players) record(WINNER, false, player, -1, 0);
+    }
+
+    /**
+     * Flushes the recording and truncates the file to the written records. Normally called once the game threads
+     * stopped, but a call that is still recording is waited for, so nothing writes to the mapping after it's truncated.
+     */
+    @Override
+    public void dispose() {
+        if (disposed) return;
+        disposed = true;  // before reading writing: a call either sees it, or is counted in writing until it wrote
+        while (writing.get() > 0) Thread.yield();
+        write(DISPOSE, false, -1, -1, 0);
+        long count = written.get();  // every reserved record within the capacity, now that no call is writing
+        buffer.force();
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "rw")) {
+            file.setLength(HEADER_SIZE + count * RECORD_SIZE);
+        } catch (IOException e) {  // e.g. a mapped file cannot be truncated on Windows, the unwritten records read as type 0
+            logger.severe("cannot truncate ui recording " + fileName + ": " + e.getMessage());
+        }
+        logger.info(() -> "recorded " + count + " ui calls to " + fileName);
+    }
+
+    /**
+     * Prints the calls in a recording as text.
+     *
+     * @param file - the recording file.
+     * @param out  - where to print them, one call per line.
+     * @return - the number of calls printed.
+     * @throws IOException - if the file cannot be read or isn't a ui recording.
+     */
+    public static long print(Path file, PrintStream out) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+        if (in.limit() < HEADER_SIZE || in.getInt(0) != MAGIC || in.getInt(4) != VERSION)
+            throw new IOException(file + " is not a ui recording (of version " + VERSION + ")");
+        int recordSize = in.getInt(8);
+        out.printf("players=%d tableSize=%d start=%tF %<tT.%<tL%n", in.getInt(12), in.getInt(16), in.getLong(24));
+
+        long count = 0;
+        for (int position = HEADER_SIZE; position + recordSize <= in.limit(); position += recordSize) {
+            byte type = in.get(position + 8);
+            if (type <= 0 || type >= TYPE_NAMES.length) continue;  // never written
+            StringBuilder line = new StringBuilder(String.format("%12.3fms %s", in.getLong(position) / 1e6, TYPE_NAMES[type]));
+            short player = in.getShort(position + 10);
+            int slot = in.getInt(position + 12);
+            long value = in.getLong(position + 16);
+            if (player >= 0) line.append(" player=").append(player + 1);
+            if (slot >= 0) line.append(" slot=").append(slot);
+            if (type == PLACE_CARD) line.append(" card=").append(value);
+            else if (type == COUNTDOWN || type == ELAPSED || type == FREEZE) line.append(" millies=").append(value);
+            else if (type == SCORE) line.append(" score=").append(value);
+            if (in.get(position + 9) != 0) line.append(" warn");
+            out.println(line);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Usage: RecordingUserInterface [ui recording file]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: RecordingUserInterface <ui recording file>");
+            return;
+        }
+        print(Paths.get(args[0]), System.out);
+    }
+}
@@ -0,0 +1,110 @@
+package bguspl.set;
+
+import bguspl.set.ex.Table;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * Re-executes a game from its event log (see EventLog) on a headless table, as fast as possible.
+ * Usage: Replay [event log file] [number of times to replay it]
+ */
+public class Replay {
+
+    /**
+     * The results of replaying an event log.
+     */
+    public static class Summary {
+        public long events;
+        public long sets;
+        public long illegalSets;
+        public long penalties;
+        public long gameNanos;
+        public long replayNanos;
+
+        @Override
+        public String toString() {
+            double replaySeconds = replayNanos / 1e9;
+            return String.format("replayed %d events (%d sets, %d penalties, %d illegal sets) of a %.1fs game in %.1fms (%.0f events/s)",
+                    events, sets, penalties, illegalSets, gameNanos / 1e9, replayNanos / 1e6, events / replaySeconds);
+        }
+    }
+
+    /**
+     * Replays an event log.
+     *
+     * @param in     - the event log.
+     * @param logger - the logger for the replayed game.
+     * @return - what was replayed.
+     */
+    public static Summary replay(InputStream in, Logger logger) throws IOException {
+        try (EventLog.Reader reader = new EventLog.Reader(new BufferedInputStream(in, 1 << 16))) {
+            Properties properties = new Properties();
+            properties.put("LogLevel", "OFF");
+            properties.put("Seed", Long.toString(reader.seed));
+            properties.put("FeatureSize", Integer.toString(reader.featureSize));
+            properties.put("FeatureCount", Integer.toString(reader.featureCount));
+            properties.put("Rows", Integer.toString(reader.rows));
+            properties.put("Columns", Integer.toString(reader.columns));
+            properties.put("HumanPlayers", "0");
+            properties.put("ComputerPlayers", Integer.toString(reader.players));
+            properties.put("TableDelaySeconds", "0");
+            Config config = new Config(logger, properties);
+            Util util = new UtilImpl(config);
+            Table table = new Table(new Env(logger, config, new HeadlessUserInterface(), util));
+
+            Summary summary = new Summary();
+            int[] cards = new int[reader.featureSize];
+            long start = System.nanoTime();
+            while (reader.next()) {
+                int[] arguments = reader.arguments;
+                switch (reader.type) {
+                    case EventLog.CARD_PLACED:
+                        table.placeCard(arguments[0], arguments[1]);
+                        break;
+                    case EventLog.CARD_REMOVED:
+                        table.removeCard(arguments[0]);
+                        break;
+                    case EventLog.TOKEN_PLACED:
+                        table.placeToken(arguments[0], arguments[1]);
+                        break;
+                    case EventLog.TOKEN_REMOVED:
+                        table.removeToken(arguments[0], arguments[1]);
+                        break;
+                    case EventLog.SET_CLAIMED:
+                        System.arraycopy(arguments, 1, cards, 0, cards.length);
+                        if (util.testSet(cards)) summary.sets++;
+                        else summary.illegalSets++;
+                        break;
+                    case EventLog.PENALTY:
+                        summary.penalties++;
+                        break;
+                }
+                summary.events++;
+                summary.gameNanos += reader.deltaNanos;
+            }
+            summary.replayNanos = System.nanoTime() - start;
+            return summary;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("usage: Replay <event log file> [repeat]");
+            return;
+        }
+        int repeat = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        Logger logger = Logger.getLogger("SetGameReplay");
+        logger.setUseParentHandlers(false);
+        for (int i = 0; i < repeat; i++)
+            try (InputStream in = Files.newInputStream(Paths.get(args[0]))) {
+                System.out.println(replay(in, logger));
+            }
+    }
+}
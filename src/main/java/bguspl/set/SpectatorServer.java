@@ -0,0 +1,489 @@
+package bguspl.set;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * An implementation of the UserInterface interface that streams the game to spectators over WebSocket (RFC 6455), so
+ * games can be watched from a browser with no window (GET / serves a simple viewer page).
+ * A spectator first gets a snapshot of the whole display, and then a JSON message for every change, e.g.
+ * {"t":"card","slot":3,"card":41}. Every spectator has a bounded queue of messages that its own thread writes to its
+ * socket: a spectator that falls so far behind that its queue is full is disconnected, so a slow spectator never
+ * slows the game down.
+ */
+public class SpectatorServer implements UserInterface {
+
+    private static final String WEBSOCKET_GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+    private static final int MAX_REQUEST_BYTES = 8192;
+    private static final int MAX_CLIENT_FRAME_BYTES = 65536;
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 5000;
+
+    private static final int OPCODE_TEXT = 0x1;
+    private static final int OPCODE_CLOSE = 0x8;
+    private static final int OPCODE_PING = 0x9;
+    private static final int OPCODE_PONG = 0xA;
+
+    private static final byte[] CLOSE_FRAME = frame(OPCODE_CLOSE, new byte[0]);
+
+    private final Config config;
+    private final Logger logger;
+    private final ServerSocket server;
+    private final List<Spectator> spectators = new CopyOnWriteArrayList<>();
+    private final AtomicInteger spectatorIds = new AtomicInteger();
+    private volatile boolean disposed = false;
+
+    /**
+     * The display, for the snapshots. Changes are queued while holding the lock (but encoded before it), so a spectator
+     * that connects gets the snapshot and then exactly the changes after it (a java.util.concurrent lock, so a virtual thread waiting for it
+     * doesn't pin its carrier).
+     */
+    private final ReentrantLock stateLock = new ReentrantLock();
+    private final int[] cards;          // by slot, -1 if empty
+    private final boolean[][] tokens;   // by slot and player
+    private final int[] scores;
+    private final long[] freezes;
+    private long timerMillies = 0;
+    private boolean timerWarn = false;
+    private boolean elapsedTimer = false;
+    private int[] winners = null;
+
+    /**
+     * Starts listening for spectators on config.spectatorHost:config.spectatorPort.
+     *
+     * @param config - the game configuration.
+     * @param logger - the logger.
+     * @throws IOException - if the server socket cannot be bound.
+     */
+    public SpectatorServer(Config config, Logger logger) throws IOException {
+        this.config = config;
+        this.logger = logger;
+        cards = new int[config.tableSize];
+        Arrays.fill(cards, -1);
+        tokens = new boolean[config.tableSize][config.players];
+        scores = new int[config.players];
+        freezes = new long[config.players];
+
+        server = new ServerSocket(config.spectatorPort, 50, InetAddress.getByName(config.spectatorHost));
+        Thread acceptor = new Thread(this::acceptLoop, "spectator-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        logger.info("spectators can watch the game at http://" + config.spectatorHost + ":" + port() + "/");
+    }
+
+    /**
+     * @return - the port the server listens on (useful with SpectatorPort=0).
+     */
+    public int port() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return - the number of connected spectators.
+     */
+    public int spectators() {
+        return spectators.size();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        change(() -> cards[slot] = card, () -> "{\"t\":\"card\",\"slot\":" + slot + ",\"card\":" + card + "}");
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        change(() -> cards[slot] = -1, () -> "{\"t\":\"card\",\"slot\":" + slot + ",\"card\":-1}");
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        change(() -> tokens[slot][player] = true, () -> "{\"t\":\"token\",\"player\":" + player + ",\"slot\":" + slot + ",\"on\":true}");
+    }
+
+    @Override
+    public void removeTokens() {
+        change(() -> {
+            for (boolean[] slot : tokens) Arrays.fill(slot, false);
+        }, () -> "{\"t\":\"tokens\",\"slot\":-1}");
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        change(() -> Arrays.fill(tokens[slot], false), () -> "{\"t\":\"tokens\",\"slot\":" + slot + "}");
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        change(() -> tokens[slot][player] = false, () -> "{\"t\":\"token\",\"player\":" + player + ",\"slot\":" + slot + ",\"on\":false}");
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        change(() -> {
+            timerMillies = millies;
+            timerWarn = warn;
+            elapsedTimer = false;
+        }, () -> "{\"t\":\"countdown\",\"ms\":" + millies + ",\"warn\":" + warn + "}");
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        change(() -> {
+            timerMillies = millies;
+            elapsedTimer = true;
+        }, () -> "{\"t\":\"elapsed\",\"ms\":" + millies + "}");
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        change(() -> freezes[player] = millies, () -> "{\"t\":\"freeze\",\"player\":" + player + ",\"ms\":" + millies + "}");
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        change(() -> scores[player] = score, () -> "{\"t\":\"score\",\"player\":" + player + ",\"score\":" + score + "}");
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        int[] ids = players.clone();
+        change(() -> winners = ids, () -> "{\"t\":\"winners\",\"players\":" + Arrays.toString(ids) + "}");
+    }
+
+    /**
+     * Closes the connections of the spectators (after their queued messages) and stops accepting new ones.
+     */
+    @Override
+    public void dispose() {
+        disposed = true;
+        try {
+            server.close();
+        } catch (IOException ignored) {
+        }
+        for (Spectator spectator : spectators) {
+            if (!spectator.queue.offer(CLOSE_FRAME)) spectator.disconnect("too slow");
+        }
+        spectators.clear();
+    }
+
+    /**
+     * Changes the display and sends the change to the spectators. The message is only built when there are
+     * spectators, and then before taking the state lock, which is held only to update the display and queue the frame.
+     *
+     * @param update  - updates the display.
+     * @param message - builds the JSON message of the change.
+     */
+    private void change(Runnable update, Supplier<String> message) {
+        byte[] frame = spectators.isEmpty() ? null : textFrame(message);
+        stateLock.lock();
+        try {
+            update.run();
+            if (spectators.isEmpty()) return;
+            if (frame == null) frame = textFrame(message);  // a spectator connected meanwhile
+            for (Spectator spectator : spectators)
+                if (!spectator.queue.offer(frame)) spectator.disconnect("too slow");  // never waits for a spectator
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    private static byte[] textFrame(Supplier<String> message) {
+        return frame(OPCODE_TEXT, message.get().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return - the JSON snapshot of the whole display. Called while holding the state lock.
+     */
+    private String snapshot() {
+        StringBuilder json = new StringBuilder("{\"t\":\"snapshot\",\"rows\":").append(config.rows)
+                .append(",\"columns\":").append(config.columns).append(",\"players\":[");
+        for (int player = 0; player < config.players; player++) {
+            if (player > 0) json.append(',');
+            json.append(quote(config.playerNames[player]));
+        }
+        json.append("],\"cards\":").append(Arrays.toString(cards)).append(",\"tokens\":[");
+        for (int slot = 0; slot < tokens.length; slot++) {
+            if (slot > 0) json.append(',');
+            json.append('[');
+            boolean first = true;
+            for (int player = 0; player < config.players; player++) {
+                if (!tokens[slot][player]) continue;
+                if (!first) json.append(',');
+                json.append(player);
+                first = false;
+            }
+            json.append(']');
+        }
+        json.append("],\"scores\":").append(Arrays.toString(scores))
+                .append(",\"freezes\":").append(Arrays.toString(freezes))
+                .append(",\"timer\":").append(elapsedTimer ? "\"elapsed\"" : "\"countdown\"")
+                .append(",\"ms\":").append(timerMillies)
+                .append(",\"warn\":").append(timerWarn)
+                .append(",\"winners\":").append(winners == null ? "null" : Arrays.toString(winners))
+                .append('}');
+        return json.toString();
+    }
+
+    private static String quote(String text) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') quoted.append('\\').append(c);
+            else if (c < 0x20) quoted.append(String.format("\\u%04x", (int) c));
+            else quoted.append(c);
+        }
+        return quoted.append('"').toString();
+    }
+
+    private void acceptLoop() {
+        while (!disposed) {
+            try {
+                Socket socket = server.accept();
+                Thread connection = new Thread(() -> serve(socket), "spectator-connection");
+                connection.setDaemon(true);
+                connection.start();
+            } catch (IOException e) {
+                if (!disposed) logger.severe("spectator server failed to accept: " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * Serves a connection: the viewer page for a plain GET, or a WebSocket that is read until it closes.
+     */
+    private void serve(Socket socket) {
+        try {
+            socket.setSoTimeout(HANDSHAKE_TIMEOUT_MILLIS);
+            socket.setTcpNoDelay(true);
+            InputStream in = socket.getInputStream();
+            Map<String, String> headers = new HashMap<>();
+            String requestLine = readRequest(in, headers);
+            String key = headers.get("sec-websocket-key");
+            if (requestLine == null || !requestLine.startsWith("GET ")) {
+                respond(socket, "400 Bad Request", "text/plain", "bad request".getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            if (key == null || !"websocket".equalsIgnoreCase(headers.get("upgrade"))) {
+                respond(socket, "200 OK", "text/html; charset=utf-8", viewerPage());
+                return;
+            }
+
+            OutputStream out = socket.getOutputStream();
+            out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                    + "Sec-WebSocket-Accept: " + acceptKey(key) + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            socket.setSoTimeout(0);
+
+            Spectator spectator = new Spectator(socket);
+            stateLock.lock();
+            try {
+                if (disposed) {
+                    spectator.queue.offer(CLOSE_FRAME);
+                } else {
+                    spectator.queue.offer(frame(OPCODE_TEXT, snapshot().getBytes(StandardCharsets.UTF_8)));
+                    spectators.add(spectator);
+                }
+            } finally {
+                stateLock.unlock();
+            }
+            spectator.writer.start();
+            logger.info(() -> "spectator " + spectator.id + " connected from " + socket.getRemoteSocketAddress());
+            spectator.readLoop(new DataInputStream(in));
+        } catch (IOException e) {
+            closeQuietly(socket);
+        }
+    }
+
+    /**
+     * Reads an HTTP request line and its headers (with lower case names).
+     *
+     * @return - the request line, or null if the request is too long or the connection was closed.
+     */
+    private static String readRequest(InputStream in, Map<String, String> headers) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        String requestLine = null;
+        int total = 0;
+        int b;
+        while ((b = in.read()) != -1 && ++total <= MAX_REQUEST_BYTES) {
+            if (b != '\n') {
+                if (b != '\r') line.write(b);
+                continue;
+            }
+            String text = new String(line.toByteArray(), StandardCharsets.ISO_8859_1);
+            line.reset();
+            if (text.isEmpty()) return requestLine;
+            if (requestLine == null) {
+                requestLine = text;
+            } else {
+                int colon = text.indexOf(':');
+                if (colon > 0) headers.put(text.substring(0, colon).trim().toLowerCase(), text.substring(colon + 1).trim());
+            }
+        }
+        return null;
+    }
+
+    private static void respond(Socket socket, String status, String contentType, byte[] body) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Type: " + contentType + "\r\nContent-Length: " + body.length
+                + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write(body);
+        out.flush();
+        socket.close();
+    }
+
+    private byte[] viewerPage() throws IOException {
+        try (InputStream page = SpectatorServer.class.getClassLoader().getResourceAsStream("spectator.html")) {
+            if (page == null) return "spectator.html is missing".getBytes(StandardCharsets.UTF_8);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n; (n = page.read(buffer)) != -1; ) bytes.write(buffer, 0, n);
+            return bytes.toByteArray();
+        }
+    }
+
+    /**
+     * @param key - the Sec-WebSocket-Key of the handshake.
+     * @return - the Sec-WebSocket-Accept of the response.
+     */
+    static String acceptKey(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            return Base64.getEncoder().encodeToString(sha1.digest((key + WEBSOCKET_GUID).getBytes(StandardCharsets.ISO_8859_1)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);  // every Java platform has SHA-1
+        }
+    }
+
+    /**
+     * @return - an unmasked frame (a server never masks its frames) with the whole payload.
+     */
+    static byte[] frame(int opcode, byte[] payload) {
+        int length = payload.length;
+        int header = length < 126 ? 2 : length < 65536 ? 4 : 10;
+        byte[] frame = new byte[header + length];
+        frame[0] = (byte) (0x80 | opcode);  // FIN
+        if (length < 126) {
+            frame[1] = (byte) length;
+        } else if (length < 65536) {
+            frame[1] = 126;
+            frame[2] = (byte) (length >> 8);
+            frame[3] = (byte) length;
+        } else {
+            frame[1] = 127;
+            for (int i = 0; i < 8; i++) frame[2 + i] = (byte) ((long) length >> (8 * (7 - i)));
+        }
+        System.arraycopy(payload, 0, frame, header, length);
+        return frame;
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * A connected spectator, with its queue of frames and the thread that writes them.
+     */
+    private class Spectator {
+
+        private final int id = spectatorIds.incrementAndGet();
+        private final Socket socket;
+        private final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(config.spectatorQueueCapacity);
+        private final Thread writer;
+        private volatile boolean connected = true;
+
+        private Spectator(Socket socket) {
+            this.socket = socket;
+            writer = new Thread(this::writeLoop, "spectator-" + id);
+            writer.setDaemon(true);
+        }
+
+        private void writeLoop() {
+            try {
+                OutputStream out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+                while (connected) {
+                    byte[] frame = queue.take();
+                    out.write(frame);
+                    if (frame == CLOSE_FRAME) break;
+                    if (queue.isEmpty()) out.flush();
+                }
+                out.flush();
+            } catch (IOException | InterruptedException ignored) {
+            }
+            disconnect(null);
+        }
+
+        /**
+         * Reads the spectator's frames: answers pings and closes, and ignores the rest. Disconnects the spectator on a
+         * frame that is unmasked or too long.
+         */
+        private void readLoop(DataInputStream in) {
+            try {
+                while (connected) {
+                    int first = in.readUnsignedByte();
+                    int second = in.readUnsignedByte();
+                    long length = second & 0x7f;
+                    if (length == 126) length = in.readUnsignedShort();
+                    else if (length == 127) length = in.readLong();
+                    if (length < 0 || length > MAX_CLIENT_FRAME_BYTES) break;  // negative if the top bit was set
+                    if ((second & 0x80) == 0) break;  // a client must mask its frames (RFC 6455 section 5.1)
+                    byte[] mask = new byte[4];
+                    in.readFully(mask);
+                    byte[] payload = new byte[(int) length];
+                    in.readFully(payload);
+                    for (int i = 0; i < payload.length; i++) payload[i] ^= mask[i & 3];
+
+                    int opcode = first & 0x0f;
+                    if (opcode == OPCODE_CLOSE) {
+                        queue.offer(CLOSE_FRAME);
+                        spectators.remove(this);
+                        return;  // the writer closes the socket
+                    }
+                    if (opcode == OPCODE_PING && !queue.offer(frame(OPCODE_PONG, payload))) break;
+                }
+            } catch (EOFException | SocketException ignored) {
+            } catch (IOException | RuntimeException e) {
+                logger.info(() -> "spectator " + id + " read failed: " + e);
+            }
+            disconnect(null);  // also after a bad frame
+        }
+
+        /**
+         * Closes the connection (its writer stops on the closed socket or the interrupt).
+         *
+         * @param reason - why it's disconnected (logged), or null if it closed or failed.
+         */
+        private void disconnect(String reason) {
+            if (!connected) return;
+            connected = false;
+            spectators.remove(this);
+            closeQuietly(socket);
+            writer.interrupt();
+            logger.info(() -> "spectator " + id + " disconnected" + (reason == null ? "" : " (" + reason + ")"));
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Plays many independent games of computer players with no user interface, a bounded number of them at a time, for
+ * load testing and for evaluating computer players. All the configured durations (table delay, freezes, turn timeout)
+ * are divided by a time compression factor.
+ * The dealers run on a fixed pool of threads, one per game played at a time. The players and computer players of a
+ * game still run on their own threads (they are interrupted, unparked and joined as threads), which the dealer joins
+ * before its game ends, so at most parallelism * (1 + 2 * players) threads run at a time.
+ * Usage: Tournament [number of games] [games played at a time] [time compression] [configuration file]
+ */
+public class Tournament {
+
+    /**
+     * The configured durations (in seconds) that are divided by the time compression factor, with their defaults.
+     */
+    private static final String[][] DURATIONS = {
+            {"TableDelaySeconds", "0.1"},
+            {"PointFreezeSeconds", "1"},
+            {"PenaltyFreezeSeconds", "3"},
+            {"TurnTimeoutSeconds", "60"},
+            {"TurnTimeoutWarningSeconds", "60"},
+            {"AiReactionSeconds", "0.5"},
+    };
+
+    /**
+     * The results of a tournament.
+     */
+    public static class Summary {
+        public int games;
+        public int parallelism;
+        public double timeCompression;
+        public long sets;
+        public long wallNanos;
+        public final LatencyHistogram gameDurations = new LatencyHistogram();
+        public final LatencyHistogram claimLatency = new LatencyHistogram();
+
+        @Override
+        public String toString() {
+            double seconds = wallNanos / 1e9;
+            return String.format("tournament: %d games (%d at a time, time compression x%s) in %.2fs: %.2f games/s, %.1f sets/s%n", games,
+                    parallelism, timeCompression, seconds, games / seconds, sets / seconds) +
+                    String.format("game duration: p50=%.0fms p90=%.0fms p99=%.0fms max=%.0fms%n", gameDurations.percentile(50) / 1e6,
+                            gameDurations.percentile(90) / 1e6, gameDurations.percentile(99) / 1e6, gameDurations.max() / 1e6) +
+                    "claim latency: " + claimLatency;
+        }
+    }
+
+    /**
+     * Divides the configured durations by the time compression factor, and makes the game headless and silent.
+     *
+     * @param properties      - the configuration properties of the games.
+     * @param timeCompression - the factor to divide the durations by.
+     * @return - the configuration properties of a tournament game.
+     */
+    static Properties tournamentProperties(Properties properties, double timeCompression) {
+        Properties result = new Properties();
+        result.putAll(properties);
+        for (String[] duration : DURATIONS) {
+            double seconds = Double.parseDouble(properties.getProperty(duration[0], duration[1]));
+            result.put(duration[0], Double.toString(seconds / timeCompression));
+        }
+        result.put("HumanPlayers", "0");
+        result.put("Hints", "False");
+        result.put("EndGamePauseSeconds", "0");
+        result.put("EventLogFile", "");
+        result.put("LogLevel", "OFF");  // the tournament logger has no handlers anyway
+        return result;
+    }
+
+    /**
+     * Plays a tournament.
+     *
+     * @param properties      - the configuration properties of the games (see tournamentProperties). If Seed is set,
+     *                        game i is played with seed Seed + i.
+     * @param games           - the number of games to play.
+     * @param parallelism     - the number of games played at a time (and the size of the dealers' thread pool).
+     * @param timeCompression - the factor to divide the configured durations by.
+     * @param logger          - the logger of all the games.
+     * @return - the results.
+     */
+    public static Summary play(Properties properties, int games, int parallelism, double timeCompression, Logger logger)
+            throws InterruptedException {
+        Properties gameProperties = tournamentProperties(properties, timeCompression);
+        String seed = gameProperties.getProperty("Seed", "").trim();
+
+        Summary summary = new Summary();
+        summary.games = games;
+        summary.parallelism = parallelism;
+        summary.timeCompression = timeCompression;
+
+        AtomicInteger dealerCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, runnable -> new Thread(runnable, "dealer-" + dealerCount.incrementAndGet()));
+        List<Future<?>> results = new ArrayList<>(games);
+        long start = System.nanoTime();
+        for (int i = 0; i < games; i++) {
+            Properties configuration = new Properties();
+            configuration.putAll(gameProperties);
+            if (!seed.isEmpty()) configuration.put("Seed", Long.toString(Long.parseLong(seed) + i));
+            results.add(executor.submit(() -> {
+                long gameStart = System.nanoTime();
+                Config config = new Config(logger, configuration);
+                Env env = new Env(logger, config, new HeadlessUserInterface(), new UtilImpl(config));
+                Table table = new Table(env);
+                Player[] players = new Player[config.players];
+                Dealer dealer = new Dealer(env, table, players);
+                for (int id = 0; id < players.length; id++)
+                    players[id] = new Player(env, dealer, table, id, false);
+                dealer.run();
+
+                long sets = 0;
+                for (Player player : players) sets += player.score();
+                synchronized (summary) {
+                    summary.sets += sets;
+                    summary.gameDurations.record(System.nanoTime() - gameStart);
+                    summary.claimLatency.add(dealer.claimLatency());
+                }
+            }));
+        }
+        executor.shutdown();
+        try {
+            for (Future<?> result : results) result.get();
+        } catch (ExecutionException e) {
+            executor.shutdownNow();
+            throw new IllegalStateException("a tournament game failed", e.getCause());
+        }
+        summary.wallNanos = System.nanoTime() - start;
+        return summary;
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        double timeCompression = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+        String configFile = args.length > 3 ? args[3] : "config.properties";
+
+        Logger logger = Logger.getLogger("SetGameTournament");
+        logger.setUseParentHandlers(false);
+        Properties properties = Config.loadProperties(configFile, logger);
+        System.out.println(play(properties, games, parallelism, timeCompression, logger));
+    }
+}
@@ -4,10 +4,10 @@ import bguspl.set.ex.Player;
 
 import javax.swing.*;
 import java.awt.*;
-import java.io.FileNotFoundException;
-import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
@@ -15,6 +15,8 @@ import static java.lang.String.format;
 
 /**
  * Java Swing implementation of the UserInterface interface.
+ * The game threads only update the state to display (lock-free, never touching Swing components). A Swing timer draws
+ * the changes at most UiFps times per second, so the cost of drawing doesn't grow with the rate of game events.
  */
 public class UserInterfaceSwing extends JFrame implements UserInterface {
 
@@ -23,6 +25,29 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     private final PlayersPanel playersPanel;
     private final WinnerPanel winnerPanel;
     private final Config config;
+    private final Logger logger;
+    private final Timer frameTimer;
+    private final long createdNanos = System.nanoTime();  // for measuring the time to the first deal
+    private volatile boolean dealt = false;
+
+    /**
+     * The kinds of the timer display, in the 2 low bits of timer (the milliseconds are in the rest).
+     */
+    private static final long NO_TIMER = -1;
+    private static final int COUNTDOWN = 0;
+    private static final int WARNING = 1;
+    private static final int ELAPSED = 2;
+
+    /**
+     * The state to display, updated by the game threads.
+     */
+    private final AtomicIntegerArray slotCards;  // the card in each slot, or CardAtlas.EMPTY
+    private final AtomicLongArray slotTokens;  // for each slot, a bit for every player with a token in it
+    private final AtomicIntegerArray scores;
+    private final AtomicLongArray freezes;
+    private volatile long timer = NO_TIMER;
+    private volatile int[] winners = null;
+    private volatile boolean dirty = false;  // set after every update, cleared by the timer before drawing
 
     static String intInBaseToPaddedString(int n, int padding, int base) {
         return format("%" + padding + "s", Integer.toString(n, base)).replace(' ', '0');
@@ -31,6 +56,15 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
     public UserInterfaceSwing(Logger logger, Config config, Player[] players) {
 
         this.config = config;
+        this.logger = logger;
+        if (config.players > Long.SIZE)
+            throw new IllegalArgumentException("cannot display the tokens of more than " + Long.SIZE + " players");
+        slotCards = new AtomicIntegerArray(config.tableSize);
+        for (int slot = 0; slot < config.tableSize; slot++) slotCards.set(slot, CardAtlas.EMPTY);
+        slotTokens = new AtomicLongArray(config.tableSize);
+        scores = new AtomicIntegerArray(config.players);
+        freezes = new AtomicLongArray(config.players);
+
         timerPanel = new TimerPanel();
         gamePanel = new GamePanel();
         playersPanel = new PlayersPanel();
@@ -67,11 +101,30 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
         addWindowListener(new WindowManager());
 
         EventQueue.invokeLater(() -> setVisible(true));
+        frameTimer = new Timer(1000 / config.uiFps, e -> drawFrame());
+        frameTimer.start();
+    }
+
+    /**
+     * Draws what changed since the last frame. Called by the frame timer, on the Swing thread.
+     */
+    private void drawFrame() {
+        if (!dirty) return;
+        dirty = false;  // before reading the state, so that later updates are drawn in the next frame
+        timerPanel.draw();
+        gamePanel.draw();
+        playersPanel.draw();
+        winnerPanel.draw();
+    }
+
+    private void changed() {
+        dirty = true;
     }
 
     private class TimerPanel extends JPanel {
 
         private final JLabel timerField;
+        private long drawnTimer = NO_TIMER;
 
         private String generateTime(long millies, boolean warn) {
             if (warn)
@@ -90,30 +143,28 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             add(timerField);
         }
 
-        private void setCountdown(long millies, boolean warn) {
-            timerField.setText(generateTime(millies, warn));
-            timerField.setForeground(warn ? Color.RED : Color.BLACK);
-        }
-
-        private void setElapsed(long millies) {
-            timerField.setText("Elapsed time: " + millies / 1000);
+        private void draw() {
+            long current = timer;
+            if (current == drawnTimer) return;
+            drawnTimer = current;
+            long millies = current >> 2;
+            int kind = (int) (current & 3);
+            if (kind == ELAPSED) {
+                timerField.setText("Elapsed time: " + millies / 1000);
+            } else {
+                timerField.setText(generateTime(millies, kind == WARNING));
+                timerField.setForeground(kind == WARNING ? Color.RED : Color.BLACK);
+            }
         }
     }
 
     private class GamePanel extends JLayeredPane {
 
-        private final Image emptyCard;
-        private final Image[] deck;
-        private final Image[][] grid;
-        private final boolean[][][] playerTokens;
+        private final CardAtlas cards;
         private final JLabel[][] tokenText;
-
-        private Image loadImageResource(String filename) {
-            URL imageResource = getClass().getClassLoader().getResource(filename);
-            if (imageResource == null)
-                throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
-        }
+        private final int[] drawnCards;  // the card in each cell of the grid (CardAtlas.EMPTY for none)
+        private final long[] drawnTokens;
+        private boolean dealDrawn = false;
 
         private GamePanel() {
 
@@ -122,20 +173,15 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             // init deck and load all pictures from png files
             assert config.featureSize < 10; // otherwise there will be naming conflicts
 
-            // load the image resources
-            deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
-            emptyCard = loadImageResource("cards/empty_card.png");
-
-            grid = new Image[config.rows][config.columns];
             tokenText = new JLabel[config.rows][config.columns];
-            playerTokens = new boolean[config.players][config.rows][config.columns];
+            drawnCards = new int[config.tableSize];
+            Arrays.fill(drawnCards, CardAtlas.EMPTY);  // init the cards on the table grid as empty cards
+            drawnTokens = new long[config.tableSize];
+
+            // start loading the image resources, the cards are drawn when their images are ready
+            cards = new CardAtlas(config, logger, card -> EventQueue.invokeLater(() -> repaintCard(card)));
             for (int row = 0; row < config.rows; row++) {
                 for (int column = 0; column < config.columns; column++) {
-                    // init the cards on the table grid as empty cards
-                    grid[row][column] = emptyCard;
-
                     // init the JLabel selection overlay
                     tokenText[row][column] = new JLabel("");
                     tokenText[row][column].setVerticalAlignment(JLabel.TOP);
@@ -148,54 +194,33 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
-        private void placeCard(int slot, int card) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = deck[card];
-            validate();
-            repaint();
-        }
-
-        private void removeCard(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            grid[row][column] = emptyCard;
-            validate();
-            repaint();
-        }
-
-        private void placeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = true;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
-        }
-
-        private void removeTokens() {
-            for (int i = 0; i < config.tableSize; i++)
-                removeTokens(i);
-        }
-
-        private void removeTokens(int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            for (int player = 0; player < playerTokens.length; player++) {
-                playerTokens[player][row][column] = false;
-                tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        private void draw() {
+            for (int slot = 0; slot < config.tableSize; slot++) {
+                int row = slot / config.columns;
+                int column = slot % config.columns;
+                int card = slotCards.get(slot);
+                if (card != drawnCards[slot]) {
+                    drawnCards[slot] = card;
+                    repaint(column * config.cellWidth, row * config.cellHeight, config.cellWidth, config.cellHeight);  // only the changed cell
+                }
+                long tokens = slotTokens.get(slot);
+                if (tokens != drawnTokens[slot]) {
+                    drawnTokens[slot] = tokens;
+                    tokenText[row][column].setText(generatePlayersTokenText(tokens));
+                }
             }
         }
 
-        private void removeToken(int player, int slot) {
-            int row = slot / config.columns;
-            int column = slot % config.columns;
-            playerTokens[player][row][column] = false;
-            tokenText[row][column].setText(generatePlayersTokenText(row, column));
+        private void repaintCard(int card) {
+            for (int slot = 0; slot < config.tableSize; slot++)
+                if (drawnCards[slot] == card)
+                    repaint((slot % config.columns) * config.cellWidth, (slot / config.columns) * config.cellHeight, config.cellWidth, config.cellHeight);
         }
 
-        private String generatePlayersTokenText(int row, int column) {
+        private String generatePlayersTokenText(long tokens) {
             String text = "";
             for (int player = 0; player < config.players; player++) {
-                if (playerTokens[player][row][column])
+                if ((tokens & (1L << player)) != 0)
                     text = text.concat(config.playerNames[player] + ", ");
             }
             if (text.length() < 2)
@@ -205,21 +230,34 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
 
         @Override
         public void paintComponent(Graphics g) {
-            // draw card images
+            // draw card images, only of the cells that are repainted
+            Rectangle clip = g.getClipBounds();
             for (int row = 0; row < config.rows; row++)
-                for (int column = 0; column < config.columns; column++)
-                    g.drawImage(grid[row][column], (column * config.cellWidth), (row * config.cellHeight), this);
+                for (int column = 0; column < config.columns; column++) {
+                    int x = column * config.cellWidth, y = row * config.cellHeight;
+                    if (clip == null || clip.intersects(x, y, config.cellWidth, config.cellHeight))
+                        cards.draw(g, drawnCards[row * config.columns + column], x, y);
+                }
+
+            if (!dealDrawn && Arrays.stream(drawnCards).allMatch(card -> card != CardAtlas.EMPTY && cards.isLoaded(card))) {
+                dealDrawn = true;
+                logger.info(() -> "time to first deal: the first full table was drawn " + (System.nanoTime() - createdNanos) / 1000000 + "ms after the user interface was created");
+            }
         }
     }
 
     private class PlayersPanel extends JPanel {
 
         private final JLabel[][] playersTable;
+        private final long[] drawnFreezeSeconds;
+        private final int[] drawnScores;
 
         private PlayersPanel() {
             this.setLayout(new GridLayout(2, config.players));
             this.setPreferredSize(new Dimension(config.players * config.playerCellWidth, config.rows * config.playerCellHeight));
             this.playersTable = new JLabel[2][config.players];
+            this.drawnFreezeSeconds = new long[config.players];
+            this.drawnScores = new int[config.players];
             for (int i = 0; i < config.players; i++) {
                 this.playersTable[0][i] = new JLabel(config.playerNames[i]);
                 this.playersTable[0][i].setFont(new Font("Serif", Font.BOLD, config.fontSize));
@@ -235,6 +273,22 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             }
         }
 
+        private void draw() {
+            for (int player = 0; player < config.players; player++) {
+                long millies = freezes.get(player);
+                long seconds = millies > 0 ? millies / 1000 + 1 : 0;  // a frozen player is never drawn as not frozen
+                if (seconds != drawnFreezeSeconds[player]) {
+                    drawnFreezeSeconds[player] = seconds;
+                    setFreeze(player, millies);
+                }
+                int score = scores.get(player);
+                if (score != drawnScores[player]) {
+                    drawnScores[player] = score;
+                    playersTable[1][player].setText(Integer.toString(score));
+                }
+            }
+        }
+
         private void setFreeze(int player, long millies) {
             if (millies > 0) {
                 this.playersTable[0][player].setText(config.playerNames[player] + " (" + millies / 1000 + ")");
@@ -244,15 +298,12 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
                 this.playersTable[0][player].setForeground(Color.BLACK);
             }
         }
-
-        private void setScore(int player, int score) {
-            playersTable[1][player].setText(Integer.toString(score));
-        }
     }
 
     private class WinnerPanel extends JPanel {
 
         private final JLabel winnerAnnouncement;
+        private int[] drawnWinners = null;
 
         public WinnerPanel() {
             this.setVisible(false);
@@ -272,67 +323,94 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             winnerAnnouncement.setText(text);
             timerPanel.setVisible(false);
         }
+
+        private void draw() {
+            int[] current = winners;
+            if (current == null || current == drawnWinners) return;
+            drawnWinners = current;
+            playersPanel.setVisible(false);
+            announceWinner(current);
+            setVisible(true);
+        }
     }
 
     @Override
     public void placeCard(int card, int slot) {
-        gamePanel.placeCard(slot, card);
+        gamePanel.cards.prioritize(card);  // the image is loaded next, if it isn't ready yet
+        slotCards.set(slot, card);
+        changed();
+        if (!dealt) {  // only the dealer places cards
+            dealt = true;
+            logger.info(() -> "time to first deal: the first card was placed " + (System.nanoTime() - createdNanos) / 1000000 + "ms after the user interface was created");
+        }
     }
 
     @Override
     public void removeCard(int slot) {
-        gamePanel.removeCard(slot);
+        slotCards.set(slot, CardAtlas.EMPTY);
+        changed();
     }
 
     @Override
     public void placeToken(int player, int slot) {
-        gamePanel.placeToken(player, slot);
+        slotTokens.accumulateAndGet(slot, 1L << player, (tokens, bit) -> tokens | bit);
+        changed();
     }
 
     @Override
     public void removeTokens() {
-        gamePanel.removeTokens();
+        for (int slot = 0; slot < config.tableSize; slot++)
+            slotTokens.set(slot, 0);
+        changed();
     }
 
     @Override
     public void removeTokens(int slot) {
-        gamePanel.removeTokens(slot);
+        slotTokens.set(slot, 0);
+        changed();
     }
 
     @Override
     public void removeToken(int player, int slot) {
-        gamePanel.removeToken(player, slot);
+        slotTokens.accumulateAndGet(slot, 1L << player, (tokens, bit) -> tokens & ~bit);
+        changed();
     }
 
     @Override
     public void setCountdown(long millies, boolean warn) {
-        timerPanel.setCountdown(millies, warn);
+        timer = Math.max(0, millies) << 2 | (warn ? WARNING : COUNTDOWN);
+        changed();
     }
 
     @Override
     public void setElapsed(long millies) {
-        timerPanel.setElapsed(millies);
+        timer = Math.max(0, millies) << 2 | ELAPSED;
+        changed();
     }
 
     @Override
     public void setFreeze(int player, long millies) {
-        playersPanel.setFreeze(player, millies);
+        freezes.set(player, millies);
+        changed();
     }
 
     @Override
     public void setScore(int player, int score) {
-        playersPanel.setScore(player, score);
+        scores.set(player, score);
+        changed();
     }
 
     @Override
     public void announceWinner(int[] players) {
-        playersPanel.setVisible(false);
-        winnerPanel.announceWinner(players);
-        winnerPanel.setVisible(true);
+        winners = players.clone();
+        changed();
     }
 
     @Override
     public void dispose() {
-        super.dispose();
+        EventQueue.invokeLater(() -> {
+            frameTimer.stop();
+            super.dispose();
+        });
     }
 }
@@ -31,6 +31,16 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Finds the unique card that completes a set together with the two given cards.
+     * Only defined for the standard game where a set is made of three cards (config.featureSize == 3).
+     *
+     * @param first  - the first card id.
+     * @param second - the second card id.
+     * @return - the card id of the third card of the set, or -1 if config.featureSize != 3.
+     */
+    int completeSet(int first, int second);
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
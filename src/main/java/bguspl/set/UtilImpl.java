@@ -3,7 +3,7 @@ package bguspl.set;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Random;
 import java.util.stream.IntStream;
 
 /**
@@ -13,8 +13,55 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The number of bits each feature takes in a packed card (enough to hold featureSize - 1).
+     */
+    private final int bitsPerFeature;
+
+    /**
+     * A mask for extracting a single feature out of a packed card.
+     */
+    private final long featureMask;
+
+    /**
+     * Mapping between a card id and its features, packed as bitsPerFeature bits per feature (feature i at bit i * bitsPerFeature).
+     */
+    private final long[] packedFeatures;
+
+    /**
+     * The value of a single unit of feature i in the card id (i.e. featureSize ^ (featureCount - 1 - i)).
+     */
+    private final int[] featureWeights;
+
+    /**
+     * The source of randomness for spin (seeded from the game seed).
+     */
+    private final Random spinRandom;
+
     public UtilImpl(Config config) {
         this.config = config;
+        this.spinRandom = new Random(config.seedFor(Config.SPIN_RANDOM));
+        bitsPerFeature = Math.max(1, 32 - Integer.numberOfLeadingZeros(config.featureSize - 1));
+        featureMask = (1L << bitsPerFeature) - 1;
+
+        featureWeights = new int[config.featureCount];
+        for (int i = config.featureCount - 1, weight = 1; i >= 0; --i, weight *= config.featureSize)
+            featureWeights[i] = weight;
+
+        // precompute the features of every card once, so set checks never have to divide or allocate
+        packedFeatures = new long[config.deckSize];
+        int[] features = new int[config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card) {
+            cardToFeatures(card, features);
+            long packed = 0;
+            for (int i = 0; i < config.featureCount; ++i)
+                packed |= (long) features[i] << (i * bitsPerFeature);
+            packedFeatures[card] = packed;
+        }
+    }
+
+    private int feature(long packed, int i) {
+        return (int) ((packed >>> (i * bitsPerFeature)) & featureMask);
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,44 +87,89 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
-        int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
-        for (int i = 0; i < config.featureCount; ++i) {
-            boolean sameSame = true, butDifferent = true;
-
-            // check if this features is sameSame in all cards
-            for (int j = 1; j < features.length; ++j)
-                if (features[0][i] != features[j][i]) {
-                    sameSame = false;
-                    break;
-                }
-
-            // check if this feature is butDifferent in all cards
-            for (int j = 1; j < features.length; ++j)
-                for (int k = j; k < features.length; ++k)
-                    if (features[j - 1][i] == features[k][i]) {
-                        butDifferent = false;
-                        break;
-                    }
+        if (config.featureSize == 3 && cards.length == 3)
+            return completeSet(cards[0], cards[1]) == cards[2];
 
+        for (int i = 0; i < config.featureCount; ++i) {
+            // collect the values this feature takes in all cards as a bitmask (assumes featureSize <= 64)
+            long seen = 0;
+            for (int card : cards)
+                seen |= 1L << feature(packedFeatures[card], i);
+            int distinct = Long.bitCount(seen);
+
+            boolean sameSame = distinct <= 1;
+            boolean butDifferent = distinct == cards.length;
             if (sameSame == butDifferent) return false;
         }
         return true;
     }
 
+    @Override
+    public int completeSet(int first, int second) {
+        if (config.featureSize != 3) return -1;
+
+        long a = packedFeatures[first], b = packedFeatures[second];
+        int third = 0;
+        for (int i = 0; i < config.featureCount; ++i) {
+            // the third value is the same one if both are equal, or the remaining one if they differ
+            int value = (6 - feature(a, i) - feature(b, i)) % 3;
+            third += value * featureWeights[i];
+        }
+        return third;
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        if (config.featureSize != 3) return findSetsByCombinations(deck, count);
+
+        LinkedList<int[]> sets = new LinkedList<>();
+        int n = deck.size();
+        int[] cards = new int[n];
+        long[] present = new long[(config.deckSize + 63) >>> 6];
+        for (int i = 0; i < n; ++i) {
+            int card = deck.get(i);
+            cards[i] = card;
+            present[card >>> 6] |= 1L << card;
+        }
+        Arrays.sort(cards);
+
+        // every pair has exactly one completing card, report each set once from its two smallest cards
+        for (int i = 0; i < n; ++i)
+            for (int j = i + 1; j < n; ++j) {
+                int third = completeSet(cards[i], cards[j]);
+                if (third > cards[j] && (present[third >>> 6] & (1L << third)) != 0) {
+                    sets.add(new int[]{cards[i], cards[j], third});
+                    if (sets.size() >= count) return sets;
+                }
+            }
+        return sets;
+    }
+
+    /**
+     * Finds sets by testing every featureSize-combination of the deck. Used when a set is not made of three cards
+     * (i.e. featureSize != 3), where sets cannot be completed from a pair of cards.
+     *
+     * @param deck  - a collection of cards (may not include null objects).
+     * @param count - the maximum number of sets to find.
+     * @return - a list of up to count integer arrays, each one contains the card ids of a legal set.
+     */
+    List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
         int[] combination = new int[r];
+        int[] cards = new int[r];
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
         while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
+            for (int i = 0; i < r; ++i)
+                cards[i] = deck.get(combination[i]);
             if (testSet(cards)) {
-                sets.add(cards);
+                int[] set = cards.clone();
+                Arrays.sort(set);
+                sets.add(set);
                 if (sets.size() >= count) return sets;
             }
 
@@ -92,7 +184,7 @@ public class UtilImpl implements Util {
 
     public void spin() {
         if (config.randomSpinMax <= 0) return;
-        long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
+        long cycles = config.randomSpinMin + (long) (spinRandom.nextDouble() * (config.randomSpinMax - config.randomSpinMin));
         for (int i = 0; i < cycles; ++i)
             Thread.yield();
     }
@@ -0,0 +1,55 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Random;
+
+/**
+ * How a computer player chooses the keys it presses. Called only by the computer player's thread.
+ */
+public interface AiStrategy {
+
+    /**
+     * Returned by nextPress when there is nothing to press right now.
+     */
+    int NONE = -1;
+
+    /**
+     * Waits as long as the strategy wants to (a reaction time, or until there is something to press) and chooses the
+     * next slot to press.
+     *
+     * @return - the slot to press, or NONE.
+     * @throws InterruptedException - if the thread was interrupted while waiting (i.e. the game is terminating).
+     */
+    int nextPress() throws InterruptedException;
+
+    /**
+     * The names of the strategies, as configured by AiStrategy.
+     */
+    String[] NAMES = {"random", "perfect", "human"};
+
+    /**
+     * Creates a strategy.
+     *
+     * @param name   - the name of the strategy (one of NAMES, see config.aiStrategy).
+     * @param env    - the environment object.
+     * @param player - the computer player.
+     * @param table  - the table object.
+     * @param random - the computer player's source of randomness.
+     * @param random_press_delay - the number of milliseconds the random strategy waits before each key press.
+     * @return - the strategy.
+     * @throws IllegalArgumentException - if there is no strategy with this name.
+     */
+    static AiStrategy create(String name, Env env, Player player, Table table, Random random, long random_press_delay) {
+        switch (name) {
+            case "perfect":
+                return new SetFindingAi(env, player, table, random, 0, 0);
+            case "human":
+                return new SetFindingAi(env, player, table, random, env.config.aiReactionMillis, env.config.aiErrorRate);
+            case "random":
+                return new RandomAi(table, random, random_press_delay);
+            default:
+                throw new IllegalArgumentException("unknown AI strategy: " + name);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package bguspl.set.ex;
+
+/**
+ * A player's claim that the cards under his tokens are a legal set, as he saw the table when he placed his last token.
+ * Made by the player (see Table.claim) and checked by the dealer, so it is never modified after it is made.
+ *
+ * @inv slots.length == cards.length == generations.length
+ */
+public final class Claim {
+
+    /**
+     * The id of the player who claims the set.
+     */
+    public final int player;
+
+    /**
+     * The slots of the player's tokens, in ascending order (must not be modified).
+     */
+    public final int[] slots;
+
+    /**
+     * The cards that were in these slots (must not be modified).
+     */
+    public final int[] cards;
+
+    /**
+     * The generations of the slots (see Table.generation) when the player placed his tokens on them
+     * (must not be modified).
+     */
+    public final long[] generations;
+
+    /**
+     * The System.nanoTime() when the claim was made.
+     */
+    public final long time_nanos;
+
+    public Claim(int player, int[] slots, int[] cards, long[] generations) {
+        this.player = player;
+        this.slots = slots;
+        this.cards = cards;
+        this.generations = generations;
+        this.time_nanos = System.nanoTime();
+    }
+}
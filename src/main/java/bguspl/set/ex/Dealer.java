@@ -1,12 +1,17 @@
 package bguspl.set.ex;
 
+import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.EventLog;
+import bguspl.set.GameThreads;
+import bguspl.set.LatencyHistogram;
 
-import java.util.List;
 import java.util.Vector;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.Random;
 
 
@@ -27,9 +32,19 @@ public class Dealer implements Runnable {
     private final Player[] players;  //      <<---------------------------------
 
     /**
-     * The list of card ids that are left in the dealer's deck.
+     * The threads of the players, in the order they were started.
      */
-    private final List<Integer> deck;  //      <<--------------------------------- card id's for the cards that are lefttt (0-80)
+    private final Thread[] player_threads;
+
+    /**
+     * The card ids that are left in the dealer's deck.
+     */
+    private final Deck deck;  //      <<--------------------------------- card id's for the cards that are lefttt (0-80)
+
+    /**
+     * Tracks whether a legal set is left among the cards in the deck and on the table.
+     */
+    private final SolvabilityTracker solvability;
 
     /**
      * True iff game should be terminated.
@@ -37,36 +52,96 @@ public class Dealer implements Runnable {
     private volatile boolean terminate;  //      <<---------------------------------
 
     /**
-     * The time when the dealer needs to reshuffle the deck due to turn timeout.
+     * The time when the dealer needs to reshuffle the deck due to turn timeout (in System.nanoTime()).
      */
-    private long reshuffleTime = Long.MAX_VALUE;  //      <<---------------------------------  the reshuffle time in the future, this is the value in the skeleton, changing it in contructor.
+    private long reshuffleTime = Long.MAX_VALUE;  //      <<---------------------------------  the reshuffle time in the future, this is the value in the skeleton, changing it in updateTimerDisplay(true).
 
+    /**
+     * True once the reshuffle time passed (set by the reshuffle timer, cleared when the countdown is reset).
+     */
+    private boolean reshuffle_due;
+
+    /**
+     * The dealer's deadlines: the reshuffle, the countdown display ticks, the hints, and the players' freeze display
+     * ticks and expiries. Only the timers whose deadline passed do any work, so waiting doesn't scan the players.
+     */
+    private final TimingWheel wheel;
 
-    protected volatile ArrayBlockingQueue<Player> players_waiting_for_set_check;  // A queue of the players that need their set checked     <<---------------------------------
+    /**
+     * The pending timers of the turn (null before the first turn).
+     */
+    private TimingWheel.Timer reshuffle_timer;
+    private TimingWheel.Timer countdown_timer;
+    private TimingWheel.Timer hints_timer;
+
+    /**
+     * The pending freeze timer of each player (null if he isn't frozen), and when his freeze ends (in System.nanoTime()).
+     */
+    private final TimingWheel.Timer[] freeze_timers;
+    private final long[] freeze_until;
+
+
+    /**
+     * The events the dealer thread reacts to (set claims and termination). Many players offer to it and only the dealer
+     * polls it, without locking; the dealer thread is parked while it is empty and no deadline (countdown tick, freeze
+     * expiry or reshuffle) has passed, and is unparked by whoever offers an event.
+     */
+    protected final ConcurrentLinkedQueue<DealerEvent> events;
+
+    /**
+     * The number of events in the queue, for the claim queue depth metric (the queue's size() walks the whole queue).
+     */
+    private final AtomicInteger events_pending = new AtomicInteger();
+
+    /**
+     * The dealer thread (null until it starts).
+     */
+    private volatile Thread dealer_thread;
+
+    /**
+     * The time from a player placing the last token of a legal set until he is awarded the point.
+     */
+    private final LatencyHistogram claim_latency;
+
+    /**
+     * The numbers of claims checked, of them the legal sets and the penalties, and of reshuffles (see env.metrics).
+     */
+    private final LongAdder claims_checked;
+    private final LongAdder claims_valid;
+    private final LongAdder penalties;
+    private final LongAdder reshuffles;
 
     
     private final long delay_fixer = 1000;    //  it was said in the forum that we can make a field like this and use it. to avoid magic numbers. would have added to config and used but can  
     //                                                                                                                                                          only change here.
 
-    private final long wait_time = 50;    //  it was said in the forum that we can make a field like this and use it. to avoid magic numbers. would have added to config and used but can  
+    private final long wait_time = 50;    //  the countdown display refresh period during the warning (when it shows hundredths). it was said in the forum that we can make a field like this and use it. to avoid magic numbers. would have added to config and used but can  
     //                                                                                                                                                          only change here.
 
     private final long hints_time = 9000;    //  it was said in the forum that we can make a field like this and use it. to avoid magic numbers. would have added to config and used but can  
     //                                                                                                                                                          only change here.
 
-    private final long hints_add_range = 5;    //  it was said in the forum that we can make a field like this and use it. to avoid magic numbers. would have added to config and used but can  
-    //                                                                                                                                                          only change here.
-
 
 
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
-        deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        deck = new Deck(env.config.deckSize, new Random(env.config.seedFor(Config.DECK_RANDOM)));
+        deck.shuffle();
+        solvability = new SolvabilityTracker(env);
         this.terminate = false;  // initialization to false
-        this.reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;  //  set the time to reshuffle in the future
-        players_waiting_for_set_check = new ArrayBlockingQueue<Player>(players.length);
+        wheel = new TimingWheel(System.nanoTime());
+        freeze_timers = new TimingWheel.Timer[players.length];
+        freeze_until = new long[players.length];
+        player_threads = new Thread[players.length];
+        events = new ConcurrentLinkedQueue<DealerEvent>();
+        claim_latency = env.metrics.histogram("dealer.claim_latency");
+        claims_checked = env.metrics.counter("dealer.claims_checked");
+        claims_valid = env.metrics.counter("dealer.claims_valid");
+        penalties = env.metrics.counter("dealer.penalties");
+        reshuffles = env.metrics.counter("dealer.reshuffles");
+        env.metrics.gauge("dealer.claim_queue_depth", events_pending::get);
     }
 
 
@@ -76,10 +151,12 @@ public class Dealer implements Runnable {
      */
     @Override
     public void run(){
-        env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        dealer_thread = Thread.currentThread();
+        env.logger.info(() -> "thread " + Thread.currentThread().getName() + " starting.");
 
         for(Player p : players){
-            Thread Player_i_thread = new Thread(p, "Player " + p.id + "'s Thread");
+            Thread Player_i_thread = GameThreads.newThread(env, p, "Player " + p.id + "'s Thread");  // a virtual thread with ThreadingMode=virtual
+            player_threads[p.id] = Player_i_thread;
             Player_i_thread.start();
         }
 
@@ -91,26 +168,50 @@ public class Dealer implements Runnable {
         }
 
         announceWinners();
-        env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        if(!terminate){
+            terminate();  // the game is over, so the players stop too
+        }
+        for(int i = player_threads.length - 1; i >= 0; i--){  // in reverse order of creation
+            try {
+                player_threads[i].join();
+            } catch (InterruptedException ignored) {}
+        }
+        table.close();
+        env.logger.info(() -> "claim latency (last token placed to point awarded): " + claim_latency);
+        env.logger.info(() -> "thread " + Thread.currentThread().getName() + " terminated.");
     }
 
 
 
     /**
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.  // <<--------------------------  the 60s game loop !
+     * Ends early if there is no legal set on the table, so the dealer reshuffles right away instead of waiting for the timeout.
      */
     private void timerLoop() {  //   60s game loop
-        while (!terminate && System.currentTimeMillis() < reshuffleTime) {
-            sleepUntilWokenOrTimeout();
-            updateTimerDisplay(false);
-            removeCardsFromTable();
-            placeCardsOnTable();
+        while (!terminate && !reshuffle_due) {
+            if(!table.hasSet()){
+                env.logger.info("No legal set on the table, reshuffling");
+                break;
+            }
+            DealerEvent event = nextEvent();  // null once the turn timed out
+            if(event != null && event.type == DealerEvent.Type.SET_CLAIM){
+                removeCardsFromTable(event);
+                placeCardsOnTable();
+            }
         }
     }
 
 
 
 
+    /**
+     * @return - the time from a player placing the last token of a legal set until he is awarded the point.
+     */
+    public LatencyHistogram claimLatency() {
+        return claim_latency;
+    }
+
+
     /**
      * Called when the game should be terminated.
      */
@@ -119,6 +220,7 @@ public class Dealer implements Runnable {
             p.terminate();
         }
         terminate = true;
+        offer(DealerEvent.of(DealerEvent.Type.TERMINATE));  // wakes the dealer thread up
         env.logger.info("Dealer terminated all and is about to be terminated.");
 
         // try {    
@@ -131,11 +233,12 @@ public class Dealer implements Runnable {
 
     /**
      * Check if the game should be terminated or the game end conditions are met.
+     * The game ends when no legal set can be made out of the cards left in the deck and on the table.
      *
      * @return true iff the game should be finished.
      */
     private boolean shouldFinish(){
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+        return terminate || !solvability.hasSet();
     }
 
 
@@ -143,96 +246,67 @@ public class Dealer implements Runnable {
 
 
 
+    /**
+     * Called by a player who placed his last token, so the dealer checks his set. Never blocks.
+     *
+     * @param claim - the claimed set.
+     */
+    public void submitClaim(Claim claim) {
+        offer(DealerEvent.claim(claim));
+    }
+
+
+    /**
+     * Puts an event in the dealer's queue and wakes the dealer thread up.
+     *
+     * @param event - the event.
+     */
+    private void offer(DealerEvent event) {
+        events_pending.incrementAndGet();
+        events.offer(event);
+        LockSupport.unpark(dealer_thread);  // if the dealer isn't parked, its next park returns right away
+    }
+
+
     /**
      * Checks cards should be removed from the table and removes them.       <<-----------------------------------------  checks if sets have been made and takes care of them
+     * The claim is checked against the table without locking, since only the dealer thread places and removes cards.
+     *
+     * @param event - the SET_CLAIM event of the claim that is checked.
      */
-    private void removeCardsFromTable(){    //         ------------------->>   Checking for a set, handling results and Removing cards from the table if needed   <<-------------------- purpose
-        
-        int token_i;
-        Player p = null;  // because it's got to be initalized, I don't want to create some Player, p is going to be set in thee next line.
-        while(!(players_waiting_for_set_check.isEmpty())){
-            try {
-                p = players_waiting_for_set_check.take();    
-            } catch (InterruptedException e) {}
-            
-            if(p.needs_set_check){
-                if(p.getActive_tokens().size()==env.config.featureSize){
-                    token_i=0;
-                    synchronized(table.players_tokens.get(p.getActive_tokens().get(token_i))){
-                        token_i++;
-                        synchronized(table.players_tokens.get(p.getActive_tokens().get(token_i))){
-                            token_i++;
-                            synchronized(table.players_tokens.get(p.getActive_tokens().get(token_i))){
-                                
-                                env.logger.info("Checking for a set, handling results and Removing cards from the table if needed");
-                                if(p.getActive_tokens().size() == env.config.featureSize){  // if there are 3 tokens
-                                    // check if he has a set
-
-                                    int[] players_cards = new int[p.getActive_tokens().size()]; // size=3
-                                    int ind = 0;  //  just a counter initialization
-                                    Integer removable = 0;
-                                    for(Integer token_slot : p.getActive_tokens()){
-                                        if(table.slotToCard[token_slot] == null){
-                                            p.needs_set_check = false;
-                                            removable = token_slot;
-                                            break;
-                                        }
-                                        players_cards[ind] = table.slotToCard[token_slot];
-                                        ind++;
-                                    }
-                                    if((env.util.testSet(players_cards)) && (p.needs_set_check == true)){
-                                        // this player has a set.
-                                        for(int card : players_cards){
-                                            table.removeCard(table.cardToSlot[card]);
-                                        }
-
-                                        for(Player p_to_remove_tokens_from: players){   // remove these tokens from other player's active_tokens
-                                            if(!(p.equals(p_to_remove_tokens_from))){
-                                                for(Integer token_slot_to_remove : p.getActive_tokens()){
-                                                    if(p_to_remove_tokens_from.getActive_tokens().contains(token_slot_to_remove)){
-                                                        table.removeToken(p_to_remove_tokens_from.getId(), token_slot_to_remove);       // removing his token from the table
-                                                        p_to_remove_tokens_from.getActive_tokens().remove(token_slot_to_remove);        //  using the remove(Object o), not by index
-                                                    }
-                                                }
-                                            }
-                                        }
-
-                                        for(int token_to_remove : p.getActive_tokens()){
-                                            table.removeToken(p.getId(), token_to_remove);
-                                        }
-                                        p.getActive_tokens().clear();
-
-                                        Vector<Integer> cards_for_removal = new Vector<Integer>();
-                                        for(Integer removal_card : players_cards){
-                                            cards_for_removal.add(removal_card);
-                                        }
-                                        deck.removeAll(cards_for_removal);
-                                        p.point();
-                                        reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-                                    }else{
-                                        // this player doesn't have a set.
-                                        if(p.needs_set_check){
-                                            p.penalty();
-                                        }else{
-                                            p.getActive_tokens().remove(removable);
-                                        }
-                                    }
-                                }
-                                // ui and logger stuff are already made in the table when calling it's methods from here
-                            }
-                        }
-                    }
+    private void removeCardsFromTable(DealerEvent event){    //         ------------------->>   Checking for a set, handling results and Removing cards from the table if needed   <<-------------------- purpose
+        Claim claim = event.claim;
+        Player p = players[claim.player];
+
+        if(claim.slots.length == env.config.featureSize && table.isCurrent(claim)){
+            env.logger.info("Checking for a set, handling results and Removing cards from the table if needed");
+            claims_checked.increment();
+            if(env.util.testSet(claim.cards)){
+                // this player has a set.
+                claims_valid.increment();
+                table.event_log.log(EventLog.SET_CLAIMED, p.getId(), claim.cards);
+                table.removeCards(claim.slots);  // also removes every player's tokens from these slots, at once
+
+                for(int removal_card : claim.cards){
+                    deck.remove(removal_card);
+                    solvability.remove(removal_card);  // these cards left the game
                 }
+                p.point();
+                startFreeze(p, env.config.pointFreezeMillis);
+                claim_latency.record(System.nanoTime() - claim.time_nanos);
+                updateTimerDisplay(true);
+            }else{
+                // this player doesn't have a set.
+                penalties.increment();
+                table.event_log.log(EventLog.PENALTY, p.getId());
+                p.penalty();
+                startFreeze(p, env.config.penaltyFreezeMillis);
             }
-            p.needs_set_check = false;
-            synchronized(p){
-                try {
-                    p.notifyAll();  // notifying the player that he can stop waiting for set check to be completed.
-                } catch (IllegalMonitorStateException e) {}
-            }
-
+            // ui and logger stuff are already made in the table when calling it's methods from here
         }
+        // otherwise one of the cards was removed since the claim was made (with its tokens), so there's nothing to check
 
+        p.claimChecked();  // the player can stop waiting for set check to be completed.
     }
 
 
@@ -242,7 +316,8 @@ public class Dealer implements Runnable {
      * Check if any cards can be removed from the deck and placed on the table.   <<-----------------------------------  we already did potential removals with the above method, now we'll
      */                                       //                                        only add cards to the table if there are more in the deck and if there are empty places on the table.
     private void placeCardsOnTable(){
-        synchronized(table){   //  lock the table while the dealer is making changes to it
+        table.table_lock.lock();   //  lock the table while the dealer is making changes to it
+        try {
             env.logger.info("Placing cards on the table if needed");
             if((table.countCards() < env.config.tableSize) && (!(deck.isEmpty()))){
                 int slot_index = 0; //  this is just a counter initialization
@@ -251,11 +326,9 @@ public class Dealer implements Runnable {
                         break;
                     }
                     if(slot == null){
-                        Random rand = new Random();  // for the randomization/shuffle of cards before adding a card to the table from the deck
-                        int random_card_index = rand.nextInt(deck.size());  // random a card from the deck and add it, this is the reshuffling, asked in forum and got ok for doing reshuffling
-                        int random_cardId_from_deck = deck.get(random_card_index);                                                               //                      like this.
+                        int random_cardId_from_deck = deck.draw();  // the deck is shuffled, so the top card is a random card from the deck
                         table.placeCard(random_cardId_from_deck, slot_index);
-                        deck.remove(random_card_index);  // removal from deck
+                        runDueTimers();  // a blocking table delay would hold back the freezes and the countdown display for the whole deal
                     }
                     slot_index++;
                 }
@@ -264,6 +337,8 @@ public class Dealer implements Runnable {
             for(Player p : players){
                 p.temp_freeze = false;
             }
+        } finally {
+            table.table_lock.unlock();
         }
     }
 
@@ -271,57 +346,110 @@ public class Dealer implements Runnable {
 
 
     /**
-     * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
+     * Waits until an event is submitted or the turn times out, running the timers whose deadline passed meanwhile.
+     *
+     * @return - the submitted event, or null if the turn timed out.
      */
-    private synchronized void sleepUntilWokenOrTimeout() {
+    private DealerEvent nextEvent() {
+        while(true){
+            runDueTimers();
+            if(reshuffle_due){
+                return null;
+            }
+            DealerEvent event = events.poll();
+            if(event != null){
+                events_pending.decrementAndGet();
+                return event;
+            }
+            long deadline = wheel.nextDeadline();
+            if(deadline == Long.MAX_VALUE){
+                LockSupport.park(this);  // unparked by offer()
+            }else{
+                LockSupport.parkNanos(this, deadline - System.nanoTime());  // returns right away if the deadline passed
+            }
+        }
+    }
+
 
-        try {    
-            this.wait(wait_time);   //  wait(wait_time) here and the notify is done when a player wants the dealer to check his set, he will notify the dealer.
-        } catch (InterruptedException e) {}
 
+    /**
+     * Runs the timers whose deadline passed (freeze ends, display updates, the reshuffle and the hints).
+     * Only the dealer thread runs them: while it waits for events, and between the steps of a deal or a reshuffle, so
+     * a timer is late by at most one step (one card placed, or all the cards removed, with a blocking table delay).
+     */
+    private void runDueTimers() {
+        wheel.advance(System.nanoTime());
     }
 
 
-    
 
     /**
      * Reset and/or update the countdown and the countdown display.
+     * A reset schedules the reshuffle (and the hints) a turn from now. The display is then updated, and its next
+     * update is scheduled for when the displayed time changes.
      */
     private void updateTimerDisplay(boolean reset) {
-        // running the countdownTimer down
+        long now = System.nanoTime();
         if(reset){
-            reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;
-        }
-        long time_to_display = reshuffleTime - System.currentTimeMillis();   //  it was written in the assignment's forum that it can start it at 59.
-
-        boolean warn = false;
-        if((reshuffleTime - System.currentTimeMillis()) < env.config.turnTimeoutWarningMillis){
-            warn = true;
-        }
-
-        if(time_to_display <= 0){
-            time_to_display = 0;
+            reshuffleTime = now + TimeUnit.MILLISECONDS.toNanos(env.config.turnTimeoutMillis);
+            reshuffle_due = false;
+            wheel.cancel(reshuffle_timer);
+            wheel.cancel(hints_timer);
+            reshuffle_timer = wheel.schedule(reshuffleTime, () -> reshuffle_due = true);
+            if(env.config.hints && env.config.turnTimeoutMillis > hints_time){
+                hints_timer = wheel.schedule(reshuffleTime - TimeUnit.MILLISECONDS.toNanos(hints_time), table::hints);  //  displaying hints, doron said in the forum that we can show them whenever we want.
+            }
         }
+        wheel.cancel(countdown_timer);  // the display is updated now
 
+        long time_to_display = Math.max(0, TimeUnit.NANOSECONDS.toMillis(reshuffleTime - now));   //  it was written in the assignment's forum that it can start it at 59.
+        boolean warn = time_to_display < env.config.turnTimeoutWarningMillis;
         env.ui.setCountdown(time_to_display, warn);
-        
-        if((time_to_display <= (hints_time+(wait_time+hints_add_range))) && (time_to_display >= (hints_time-(wait_time+hints_add_range))) && (env.config.hints)){
-            table.hints();   //  displaying hints, doron said in the forum that we can show them whenever we want.
-        }
 
-        for(Player p : players){      //  updating freeze times if there are frozen players.
-            long frozen_for = System.currentTimeMillis() - p.time_when_got_frozen;
-            if(p.point_freeze && ((env.config.pointFreezeMillis - frozen_for) >= 0)){   // this 0 is just to see if it's not negetive.
-                env.ui.setFreeze(p.getId(), (env.config.pointFreezeMillis - frozen_for)+delay_fixer);
-            }else if(p.penalty_freeze && ((env.config.penaltyFreezeMillis - frozen_for) >= 0)){   // this 0 is just to see if it's not negetive.
-                env.ui.setFreeze(p.getId(), (env.config.penaltyFreezeMillis - frozen_for)+delay_fixer);  // in config we don't have something that's 1000 that is safe to be here(in case it's changed)
-            }else{                                                                       // because it's for other purposes, in the forum it was said we can make a field like delay_fixer
-                env.ui.setFreeze(p.getId(), 0);
-                p.penalty_freeze = false;
-                p.point_freeze = false;
+        if(time_to_display > 0){
+            long next_update;  // in millis from now
+            if(warn){
+                next_update = Math.min(wait_time, time_to_display);  //  the warning display shows hundredths
+            }else{
+                next_update = Math.min((time_to_display % delay_fixer) + 1, time_to_display - env.config.turnTimeoutWarningMillis + 1);  // the displayed second changes or the warning starts
             }
+            countdown_timer = wheel.schedule(now + TimeUnit.MILLISECONDS.toNanos(next_update), () -> updateTimerDisplay(false));
         }
+    }
+
+
+
+    /**
+     * Freezes a player (after he was awarded a point or penalized) and displays his freeze.
+     *
+     * @param p      - the player.
+     * @param millis - how long to freeze him.
+     */
+    private void startFreeze(Player p, long millis) {
+        wheel.cancel(freeze_timers[p.id]);
+        freeze_until[p.id] = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis));
+        updateFreezeDisplay(p);
+    }
+
 
+    /**
+     * Updates the freeze display of a player and schedules its next update for when the displayed time changes, or
+     * unfreezes him if his freeze is over.
+     *
+     * @param p - the player.
+     */
+    private void updateFreezeDisplay(Player p) {
+        long now = System.nanoTime();
+        long freeze_left = TimeUnit.NANOSECONDS.toMillis(freeze_until[p.id] - now);
+        if(now - freeze_until[p.id] >= 0){
+            freeze_timers[p.id] = null;
+            env.ui.setFreeze(p.getId(), 0);
+            p.unfreeze();
+            return;
+        }
+        env.ui.setFreeze(p.getId(), freeze_left + delay_fixer);  // in config we don't have something that's 1000 that is safe to be here(in case it's changed), in the forum it was said we can make a field like delay_fixer
+        long next_update = Math.min(now + TimeUnit.MILLISECONDS.toNanos((freeze_left % delay_fixer) + 1), freeze_until[p.id]);  // the displayed second changes, or the freeze is over
+        freeze_timers[p.id] = wheel.schedule(next_update, () -> updateFreezeDisplay(p));
     }
 
 
@@ -330,37 +458,35 @@ public class Dealer implements Runnable {
      * Returns all the cards from the table to the deck.
      */
     private void removeAllCardsFromTable() {
-        synchronized(table){
+        table.table_lock.lock();
+        try {
 
             for(Player p : players){
                 p.temp_freeze = true;
             }
 
             env.logger.info("Removing all the cards from the table");
+            reshuffles.increment();
             for(Player p : players){
-                synchronized(p.getActive_tokens()){
-                    for(int sloti : p.getActive_tokens()){
-                        table.removeToken(p.getId(), sloti);
-                    }
-                    p.getActive_tokens().clear();
-                    p.keys3last_pressed_queue.clear();
-                }
+                p.clearKeys();
             }
 
+            int[] occupied_slots = new int[table.countCards()];  // only the dealer places and removes cards, so this doesn't change
+            int count = 0;
             for(int sloti=0; sloti < env.config.tableSize; sloti++){
                 if(table.slotToCard[sloti] != null){
                     deck.add(table.slotToCard[sloti]);
-                    table.removeCard(sloti);
-                }
-            }
-
-            for(Player pl : players){
-                for(int token_to_remove=0; token_to_remove<env.config.tableSize; token_to_remove++){
-                    env.ui.removeToken(pl.getId(), token_to_remove);
+                    occupied_slots[count++] = sloti;
                 }
             }
+            table.removeCards(occupied_slots);  // also removes all the tokens, at once
+            runDueTimers();
+            deck.shuffle();
+            runDueTimers();
 
 
+        } finally {
+            table.table_lock.unlock();
         }
 
     }
@@ -0,0 +1,47 @@
+package bguspl.set.ex;
+
+/**
+ * Something the dealer thread has to react to, put in the dealer's lock-free event queue by other threads. The dealer's
+ * own deadlines (freezes, countdown, hints and reshuffle) aren't events, they are timers of its TimingWheel.
+ */
+public class DealerEvent {
+
+    public enum Type {
+        SET_CLAIM,          // a player placed his last token and waits for his set to be checked
+        TERMINATE           // the game is being terminated
+    }
+
+    public final Type type;
+
+    /**
+     * The claimed set (only for SET_CLAIM).
+     */
+    public final Claim claim;
+
+    /**
+     * The System.nanoTime() when the event was made.
+     */
+    public final long time_nanos;
+
+    private DealerEvent(Type type, Claim claim, long time_nanos) {
+        this.type = type;
+        this.claim = claim;
+        this.time_nanos = time_nanos;
+    }
+
+    /**
+     * @param claim - the claimed set.
+     * @return - a SET_CLAIM event made when the claim was made.
+     */
+    public static DealerEvent claim(Claim claim) {
+        return new DealerEvent(Type.SET_CLAIM, claim, claim.time_nanos);
+    }
+
+    /**
+     * @param type - the type of the event (not SET_CLAIM).
+     * @return - an event of the given type made now.
+     */
+    public static DealerEvent of(Type type) {
+        return new DealerEvent(type, null, System.nanoTime());
+    }
+}
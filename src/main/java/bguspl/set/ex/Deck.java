@@ -0,0 +1,121 @@
+package bguspl.set.ex;
+
+import java.util.Random;
+
+/**
+ * This class holds the card ids that are left in the dealer's deck.
+ * Cards are kept in an int array in no particular order, and removed by swapping the last card into their place,
+ * so drawing and removing a card are O(1) and never allocate. It is only used by the dealer thread.
+ *
+ * @inv cards[index[card]] == card iff the card is in the deck
+ */
+public class Deck {
+
+    /**
+     * The cards in the deck (only the first size entries are used).
+     */
+    private final int[] cards;
+
+    /**
+     * Mapping between a card and its index in cards, or -1 if it is not in the deck (so this is also the presence map).
+     */
+    private final int[] index;
+
+    /**
+     * The number of cards in the deck.
+     */
+    private int size;
+
+    /**
+     * The source of randomness for drawing and shuffling cards.
+     */
+    private final Random random;
+
+    /**
+     * Creates a full deck.
+     *
+     * @param deckSize - the number of cards in the game (cards 0 to deckSize - 1 are placed in the deck).
+     * @param random   - the source of randomness for drawing and shuffling cards.
+     */
+    public Deck(int deckSize, Random random) {
+        this.cards = new int[deckSize];
+        this.index = new int[deckSize];
+        this.random = random;
+        for (int card = 0; card < deckSize; card++) {
+            cards[card] = card;
+            index[card] = card;
+        }
+        size = deckSize;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - true iff the card is in the deck.
+     */
+    public boolean contains(int card) {
+        return index[card] >= 0;
+    }
+
+    /**
+     * Removes a card from the deck.
+     *
+     * @param card - the card id.
+     * @return - true iff the card was in the deck.
+     */
+    public boolean remove(int card) {
+        int i = index[card];
+        if (i < 0) return false;
+        int last = cards[--size];
+        cards[i] = last;
+        index[last] = i;
+        index[card] = -1;
+        return true;
+    }
+
+    /**
+     * Returns a card to the deck.
+     *
+     * @param card - the card id.
+     * @return - true iff the card was not already in the deck.
+     */
+    public boolean add(int card) {
+        if (index[card] >= 0) return false;
+        cards[size] = card;
+        index[card] = size++;
+        return true;
+    }
+
+    /**
+     * Shuffles the order of the cards in the deck (Fisher-Yates).
+     */
+    public void shuffle() {
+        for (int i = size - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int card = cards[i];
+            cards[i] = cards[j];
+            cards[j] = card;
+            index[cards[i]] = i;
+            index[card] = j;
+        }
+    }
+
+    /**
+     * Removes the card at the top of the deck (the last one, after shuffle() this is a random card).
+     *
+     * @return - the card id that was drawn.
+     * @pre - the deck is not empty.
+     */
+    public int draw() {
+        int card = cards[size - 1];
+        remove(card);
+        return card;
+    }
+}
@@ -0,0 +1,121 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A player's queue of key presses (the pressed slots): a bounded ring buffer of ints, written by the one thread that
+ * presses the player's keys (the Swing event thread, or the player's computer thread) and read by the player thread.
+ * Offering a press never blocks and never allocates. A press is dropped if the ring is full, and a press of the same
+ * slot as the last queued press (which would just toggle the token back) cancels that press instead of being queued.
+ * Every queued press is either taken or cancelled exactly once: its entry changes from the slot to TAKEN or CANCELLED
+ * with a compare-and-set, so the dealer can also cancel the queued presses (see cancelAll).
+ */
+public class KeyRing {
+
+    /**
+     * What happened to an offered press.
+     */
+    public enum Offer {
+        QUEUED,     // the press was queued
+        COALESCED,  // the press cancelled the last queued press, of the same slot
+        FULL        // the ring was full, the press was dropped
+    }
+
+    /**
+     * Returned by poll when no press is queued.
+     */
+    public static final int NONE = -1;
+
+    private static final int TAKEN = -1;
+    private static final int CANCELLED = -2;
+
+    private final AtomicIntegerArray entries;  // a slot, or TAKEN/CANCELLED once it was taken or cancelled
+    private final int mask;
+    private volatile long head = 0;  // the next entry to read, only written by the reader
+    private volatile long tail = 0;  // the next entry to write, only written by the writer
+    private volatile Thread reader;  // unparked when a press is queued
+
+    /**
+     * @param capacity - the number of presses the ring holds (rounded up to a power of 2).
+     */
+    public KeyRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+        entries = new AtomicIntegerArray(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Queues a press. Called by the writer thread only.
+     *
+     * @param slot - the pressed slot.
+     * @return - whether the press was queued, coalesced with the last queued press or dropped.
+     */
+    public Offer offer(int slot) {
+        long t = tail;
+        if (t > head) {
+            int last = (int) ((t - 1) & mask);
+            if (entries.get(last) == slot && entries.compareAndSet(last, slot, CANCELLED)) return Offer.COALESCED;
+        }
+        if (t - head == entries.length()) return Offer.FULL;  // cancelled entries take room until the reader skips them
+        entries.set((int) (t & mask), slot);
+        tail = t + 1;  // publishes the entry
+        LockSupport.unpark(reader);
+        return Offer.QUEUED;
+    }
+
+    /**
+     * Takes the oldest queued press. Called by the reader thread only.
+     *
+     * @return - the pressed slot, or NONE if no press is queued.
+     */
+    public int poll() {
+        long h = head;
+        while (h < tail) {
+            int index = (int) (h & mask);
+            int slot = entries.get(index);
+            boolean taken = slot >= 0 && entries.compareAndSet(index, slot, TAKEN);
+            head = ++h;  // the entry can be written again
+            if (taken) return slot;
+        }
+        return NONE;
+    }
+
+    /**
+     * Takes the oldest queued press, waiting for one if needed. Called by the reader thread only.
+     *
+     * @return - the pressed slot.
+     * @throws InterruptedException - if the reader thread is interrupted while waiting.
+     */
+    public int take() throws InterruptedException {
+        reader = Thread.currentThread();
+        int slot;
+        while ((slot = poll()) == NONE) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            LockSupport.park(this);  // unparked by offer() or by an interrupt
+        }
+        return slot;
+    }
+
+    /**
+     * Cancels all the queued presses (presses queued meanwhile may be cancelled too). Can be called by any thread.
+     *
+     * @return - the number of presses cancelled.
+     */
+    public int cancelAll() {
+        int cancelled = 0;
+        for (long i = head, t = tail; i < t; i++) {
+            int index = (int) (i & mask);
+            int slot = entries.get(index);
+            if (slot >= 0 && entries.compareAndSet(index, slot, CANCELLED)) cancelled++;
+        }
+        return cancelled;
+    }
+
+    /**
+     * @return - the number of presses the ring holds.
+     */
+    public int capacity() {
+        return entries.length();
+    }
+}
@@ -1,13 +1,13 @@
 package bguspl.set.ex;
 
 import java.util.Random;
-import java.util.Vector;
-import java.util.concurrent.ArrayBlockingQueue;
-
-import javax.naming.InterruptedNamingException;
-import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
+import bguspl.set.Config;
 import bguspl.set.Env;
+import bguspl.set.GameThreads;
 
 /**
  * This class manages the players' threads and data
@@ -40,22 +40,35 @@ public class Player implements Runnable {
     /**
      * The thread representing the current player.
      */
-    private Thread playerThread;            //   <<---------------------------------
+    private volatile Thread playerThread;            //   <<---------------------------------
 
 
     /**
      * The thread of the AI (computer) player (an additional thread used to generate key presses).
      */
-    private Thread aiThread;            //   <<---------------------------------   this is if it's an AI then, this is another thread that presses the buttons as an AI.
+    private volatile Thread aiThread;            //   <<---------------------------------   this is if it's an AI then, this is another thread that presses the buttons as an AI.
 
 
     private final long AIRealisticSuspense = 50;    //  it was said in the forum that we can make a field like this and use it. to avoid magic numbers. would have added to config and used 
     //                                                                                                                                                       but can only change here.
 
-    protected final ArrayBlockingQueue<Integer> keys3last_pressed_queue;  // A queue of the player's actions
-    // A BlockingQueue that the aiThread/playerThread can put actions in it, and the actions taken out from it later will be made(in run()).
+    protected final KeyRing keys3last_pressed_queue;  // A queue of the player's actions
+    // A ring buffer that the Swing thread/aiThread offers actions to without ever blocking, and the actions taken out from it later will be made(in run()).
     //                              ------------>>      in it will be the slots on which the player pressed     <<---------------------------------------------------------------------
 
+    /**
+     * The number of key presses that were queued and not yet fully handled (including the check of a claim they made).
+     */
+    protected final AtomicInteger pending_keys = new AtomicInteger();
+
+    /**
+     * The numbers of key presses ignored because the player was frozen, of key presses dropped because the queue was
+     * full, and of key presses that cancelled a queued press of the same slot (of all the players, see env.metrics).
+     */
+    private final LongAdder keys_dropped_frozen;
+    private final LongAdder keys_dropped_full;
+    private final LongAdder keys_coalesced;
+
     /**
      * True iff the player is human (not a computer player).
      */
@@ -71,19 +84,20 @@ public class Player implements Runnable {
      */
     private int score;  //      <<---------------------------------
 
-    protected boolean needs_set_check;
-
-
-    private final Vector<Integer> active_tokens;  //  a size=3 Vector that has the slots in which this player has active tokens   <<-------------------------------------
-
+    /**
+     * True while the player waits for the dealer to check his claim.
+     */
+    protected volatile boolean needs_set_check;
 
-    protected boolean point_freeze;
 
-    protected boolean penalty_freeze;
+    /**
+     * True while the player is frozen after a point or a penalty (set by point() and penalty(), cleared by unfreeze()).
+     */
+    protected volatile boolean point_freeze;
 
-    protected boolean temp_freeze;
+    protected volatile boolean penalty_freeze;
 
-    protected long time_when_got_frozen;
+    protected volatile boolean temp_freeze;  // set by the dealer while it reshuffles, read by the player threads
 
 
 
@@ -104,11 +118,12 @@ public class Player implements Runnable {
         this.human = human;
         this.terminate = false;  // initialization to false
         this.score = 0; // initialization to starting 0 score, I would have used env.config.something that =0 but I don't know who should I use because the configuration can change
-        keys3last_pressed_queue = new ArrayBlockingQueue<Integer>(env.config.featureSize);  // initialized ArrayBlockingQueue, size=3
-        active_tokens = new Vector<Integer>(env.config.featureSize); // size 3
+        keys3last_pressed_queue = new KeyRing(env.config.featureSize);  // initialized KeyRing, size=3 rounded up to 4
+        keys_dropped_frozen = env.metrics.counter("player.keys_dropped_frozen");
+        keys_dropped_full = env.metrics.counter("player.keys_dropped_full");
+        keys_coalesced = env.metrics.counter("player.keys_coalesced");
         point_freeze = false;
         penalty_freeze = false;
-        time_when_got_frozen = 0;
         needs_set_check = false;
         temp_freeze = false;
     }
@@ -122,78 +137,98 @@ public class Player implements Runnable {
     public void run() {
         playerThread = Thread.currentThread();
         if(!human){ createArtificialIntelligence(); }  //  starting General aiThread here
-        env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
+        env.logger.info(() -> "thread " + Thread.currentThread().getName() + " starting.");
         boolean was_pen_now_need_to_change = false;
         int pressed_slot = 0;  //  for initialization, will put something else in it in the next line
 
         while (!terminate) {                //    ---------------------------------->>     the main while in this run()    <<-----------------------------------  <<-------------------
 
-            if(point_freeze){
-                try {
-                    Thread.sleep(env.config.pointFreezeMillis); //  makes the thread of the player sleep, meaning that he puts to sleep his constant use of his run() and then cont from here
-                } catch (InterruptedException e) {}
-            }
-            
-            if(penalty_freeze){
-                try {
-                    Thread.sleep(env.config.penaltyFreezeMillis); //  makes the thread of the player sleep, meaning that he puts to sleep his constant use of his run() and then cont from here
-                } catch (InterruptedException e) {}
+            while((point_freeze || penalty_freeze) && !terminate){
+                LockSupport.park(this);  //  the dealer times the freeze and unparks the player with unfreeze() (or terminate() interrupts him)
             }
 
-            if(!(needs_set_check)){  // if the dealer is still checking the player's set, we want the player to not just make changes in his tokens. Even though we already made him wait()
+            if(!(needs_set_check) && !terminate){  // terminate is checked since the freeze wait may have ended by termination. if the dealer is still checking the player's set, we want the player to not just make changes in his tokens. Even though we already made him wait()
                 //                                                                                                              so he won't run tirelesly.
                 try{
                     pressed_slot = keys3last_pressed_queue.take();   //   executing an action from keys3last_pressed_queue
-                }catch(InterruptedException ignored){}  // if it's full
+                }catch(InterruptedException ignored){
+                    continue;  // no key was taken, check terminate again
+                }
 
-                if(table.slotToCard[pressed_slot] != null){  // we do something only if there's a card there.
-                    if(!(active_tokens.contains(pressed_slot))){
-                        if(active_tokens.size() < env.config.featureSize){
-                            table.placeToken(id, pressed_slot);
-                            active_tokens.add(pressed_slot);  // adding this token to active_tokens
+                try{
+                    if(table.slotToCard[pressed_slot] != null){  // we do something only if there's a card there.
+                        if(!(table.hasToken(id, pressed_slot))){
+                            if(table.countTokens(id) < env.config.featureSize){
+                                table.placeToken(id, pressed_slot);
+                            }else{
+                                // then he was penalized and now he is trying to add a fourth token which we cannot allow, he needs to remove a token before.
+                                was_pen_now_need_to_change = true;  // because he probably got checked and penalized because his three tokens haven't been removed like they would've if he got a point.
+                            }
                         }else{
-                            // then he was penalized and now he is trying to add a fourth token which we cannot allow, he needs to remove a token before.
-                            was_pen_now_need_to_change = true;  // because he probably got checked and penalized because his three tokens haven't been removed like they would've if he got a point.
+                            was_pen_now_need_to_change = false;  // because now that he removes, if he had 3 already, he will have 2 and so he changed, so now we will check his NEW set after change.
+                            table.removeToken(id, pressed_slot);
                         }
-                    }else{
-                        was_pen_now_need_to_change = false;  // because now that he removes, if he had 3 already, he will have 2 and so he changed, so now we will check his NEW set after change.
-                        table.removeToken(id, pressed_slot);
-                        Integer pressed_slot_Inte = pressed_slot;
-                        active_tokens.remove(pressed_slot_Inte);  // removing the active token because it's not active anymore, token removal from the table happened in it's method above.
-                    }
     
-                    if((active_tokens.size() == env.config.featureSize) && (!(was_pen_now_need_to_change))){  // if the player has a set
-                        needs_set_check = true;
-                        try {
-                            dealer.players_waiting_for_set_check.put(this);
-                        } catch (InterruptedException e) {}
-
-                        notify_dealer_to_check_set();  // to notify the dealer to check the set
-                        player_wait_for_check();  // to make the player wait until the dealer finished checking if his set is correct or not.
+                        if((table.countTokens(id) == env.config.featureSize) && (!(was_pen_now_need_to_change))){  // if the player has a set
+                            Claim claim = table.claim(id);
+                            if(claim != null){  // null if the dealer just removed one of the cards
+                                needs_set_check = true;
+                                dealer.submitClaim(claim);  // wakes the dealer up to check the set
+                                player_wait_for_check();  // to make the player wait until the dealer finished checking if his set is correct or not.
+                            }
+                        }
                     }
+                }finally{
+                    pending_keys.decrementAndGet();  // the key press is fully handled
                 }
             }
             
         }
         
         if (!human) try { aiThread.join(); } catch (InterruptedException ignored) {}
-        env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+        env.logger.info(() -> "thread " + Thread.currentThread().getName() + " terminated.");
     }
 
 
-    private synchronized void player_wait_for_check(){
-        try {
-            this.wait();
-        } catch (InterruptedException e) {}
+    private void player_wait_for_check(){
+        while(needs_set_check && !terminate){  // the dealer may have checked the set already, before we got here
+            LockSupport.park(this);  // unparked by claimChecked() or terminate()
+        }
     }
 
 
-    private void notify_dealer_to_check_set(){
-        synchronized(dealer){
-            try {
-                dealer.notifyAll();   
-            } catch (IllegalMonitorStateException e) {}
-        }
+    /**
+     * Called by the dealer when it finished checking the player's claim.
+     */
+    protected void claimChecked(){
+        needs_set_check = false;
+        LockSupport.unpark(playerThread);
+    }
+
+
+    /**
+     * Ends the player's point/penalty freeze. Called by the dealer when the freeze time passed.
+     */
+    protected void unfreeze(){
+        point_freeze = false;
+        penalty_freeze = false;
+        LockSupport.unpark(playerThread);
+    }
+
+
+    /**
+     * @return - true iff the player is frozen (key presses are ignored).
+     */
+    protected boolean isFrozen(){
+        return point_freeze || penalty_freeze || temp_freeze;
+    }
+
+
+    /**
+     * Drops the queued key presses. Called by the dealer when it removes all the cards from the table.
+     */
+    protected void clearKeys(){
+        pending_keys.addAndGet(-keys3last_pressed_queue.cancelAll());
     }
 
 
@@ -204,14 +239,14 @@ public class Player implements Runnable {
 
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
-     * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * key presses, chosen by the configured AiStrategy. If the queue of key presses is full, the press is dropped.
      */
     private void createArtificialIntelligence() {
-        // note: this is a very, very smart AI (!)
-        aiThread = new Thread(() -> {
-            env.logger.info("thread " + Thread.currentThread().getName() + " starting.");
-            Random rand = new Random(); // for the randomization/shuffle of cards before adding a card to the table from the deck
-            int random_between_0_to_11;
+        aiThread = GameThreads.newThread(env, () -> {
+            env.logger.info(() -> "thread " + Thread.currentThread().getName() + " starting.");
+            Random rand = new Random(env.config.seedFor(Config.PLAYER_RANDOM + id)); // seeded from the game seed so games can be repeated
+            AiStrategy strategy = AiStrategy.create(env.config.aiStrategy, env, this, table, rand, AIRealisticSuspense);
+            int slot;
             try {                        
                 Thread.sleep((env.config.tableDelayMillis)*(env.config.tableSize));
             } catch (InterruptedException e) {}
@@ -219,15 +254,21 @@ public class Player implements Runnable {
             while (!terminate) {                //    ---------------------------------->>     the main while in this run()    <<-----------------------------------  <<-------------------
                 
                 try {
-                    Thread.sleep(AIRealisticSuspense); //  makes the thread of the AI sleep, meaning that he puts to sleep his constant use of his run() and then cont from here.
-                } catch (InterruptedException e) {}                          //  more realistic this way..  it was said in the forum we can do this if we want.
+                    slot = strategy.nextPress();  //  the strategy sleeps as long as it wants to before choosing.
+                } catch (InterruptedException e) {
+                    slot = AiStrategy.NONE;
+                }
+                if(terminate){
+                    break;  // the interrupt was used up by the sleep
+                }
 
-                random_between_0_to_11 = rand.nextInt(env.config.tableSize);   // random slot press
-                keyPressed(random_between_0_to_11);
+                if(slot != AiStrategy.NONE){
+                    keyPressed(slot);
+                }
 
             }
 
-            env.logger.info("thread " + Thread.currentThread().getName() + " terminated.");
+            env.logger.info(() -> "thread " + Thread.currentThread().getName() + " terminated.");
         }, "computer-" + id);
         aiThread.start();
     }
@@ -242,19 +283,17 @@ public class Player implements Runnable {
     public void terminate(){
         terminate = true;
         env.logger.info("Player is being terminated.");
-        playerThread.interrupt();
+        if(playerThread != null){  // null if the game ended before the thread started, then it stops right away
+            playerThread.interrupt();
+        }
 
-        if(!human){
+        if(!human && aiThread != null){
             aiThread.interrupt();
         }
     }
 
 
 
-    public Vector<Integer> getActive_tokens(){    //  a getter for the player's tokens
-        return active_tokens;
-    }
-
     public int getId(){  //  a getter for the player's id
         return id;
     }
@@ -265,15 +304,23 @@ public class Player implements Runnable {
 
 
     /**
-     * This method is called when a key is pressed.
+     * This method is called when a key is pressed. Never blocks (it's called by the Swing event thread).
      *
      * @param slot - the slot corresponding to the key pressed.
      */
     public void keyPressed(int slot) {
         if((!point_freeze) && (!penalty_freeze) && (!temp_freeze)){
-            try{
-                keys3last_pressed_queue.put(slot);
-            }catch(InterruptedException ignored){}  // if it's full
+            pending_keys.incrementAndGet();  // before the offer, so it's never less than the number of queued keys
+            KeyRing.Offer result = keys3last_pressed_queue.offer(slot);
+            if(result == KeyRing.Offer.COALESCED){
+                pending_keys.addAndGet(-2);  // neither this press nor the press it cancelled will be handled
+                keys_coalesced.increment();
+            }else if(result == KeyRing.Offer.FULL){
+                pending_keys.decrementAndGet();
+                keys_dropped_full.increment();
+            }
+        }else{
+            keys_dropped_frozen.increment();
         }
 
     }
@@ -289,9 +336,8 @@ public class Player implements Runnable {
     public void point() {
         score++;
         env.ui.setScore(id, score);
-        env.logger.info("Player " + id + " has been awarded 1 point. He now has " + score + " points.");
-        time_when_got_frozen = System.currentTimeMillis();
-        point_freeze = true;
+        env.logger.info(() -> "Player " + id + " has been awarded 1 point. He now has " + score + " points.");
+        point_freeze = true;  // until the dealer unfreezes him
 
 
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
@@ -303,9 +349,8 @@ public class Player implements Runnable {
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
-        env.logger.info("Player " + id + " has been penalized/penalised for choosing an illegal set.");
-        time_when_got_frozen = System.currentTimeMillis();
-        penalty_freeze = true;
+        env.logger.info(() -> "Player " + id + " has been penalized/penalised for choosing an illegal set.");
+        penalty_freeze = true;  // until the dealer unfreezes him
 
     }
 
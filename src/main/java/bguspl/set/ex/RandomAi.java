@@ -0,0 +1,38 @@
+package bguspl.set.ex;
+
+import java.util.Random;
+
+/**
+ * The original computer player: presses a random slot that holds a card every few milliseconds.
+ */
+public class RandomAi implements AiStrategy {
+
+    private final Table table;
+
+    private final Random random;
+
+    private final long press_delay;  // milliseconds before each key press
+
+    /**
+     * @param table       - the table object.
+     * @param random      - the computer player's source of randomness.
+     * @param press_delay - the number of milliseconds to wait before each key press.
+     */
+    public RandomAi(Table table, Random random, long press_delay) {
+        this.table = table;
+        this.random = random;
+        this.press_delay = press_delay;
+    }
+
+    @Override
+    public int nextPress() throws InterruptedException {
+        Thread.sleep(press_delay);  // more realistic this way..  it was said in the forum we can do this if we want.
+        int chosen = NONE;
+        int cards = 0;
+        for(int slot = 0; slot < table.slotToCard.length; slot++){  // a uniformly random one of the slots with cards, without allocating
+            if(table.slotToCard[slot] != null && random.nextInt(++cards) == 0)
+                chosen = slot;
+        }
+        return chosen;  // a card that is removed meanwhile just makes the press ignored, like a human's
+    }
+}
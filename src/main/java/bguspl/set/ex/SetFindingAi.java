@@ -0,0 +1,106 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A computer player that looks up a legal set in the table's set index and presses its slots, after taking back its
+ * other tokens. With a reaction time it waits about that long before each key press, and with an error rate it
+ * sometimes presses a random slot instead, like a human would (with neither it is a perfect player).
+ */
+public class SetFindingAi implements AiStrategy {
+
+    /**
+     * The number of milliseconds to wait before looking at the table again when there is nothing to press.
+     */
+    private static final long IDLE_MILLIS = 5;
+
+    private final Env env;
+
+    private final Player player;
+
+    private final Table table;
+
+    private final Random random;
+
+    private final long reaction_millis;  // the average delay before each key press
+
+    private final double error_rate;  // the probability of pressing a random slot instead
+
+    private int[] plan = new int[0];  // the slots to press, planned from what the table looked like
+
+    private int next = 0;  // the index of the next press in plan
+
+    /**
+     * @param env             - the environment object.
+     * @param player          - the computer player.
+     * @param table           - the table object.
+     * @param random          - the computer player's source of randomness.
+     * @param reaction_millis - the average number of milliseconds to wait before each key press.
+     * @param error_rate      - the probability of pressing a random slot instead of the planned one.
+     */
+    public SetFindingAi(Env env, Player player, Table table, Random random, long reaction_millis, double error_rate) {
+        this.env = env;
+        this.player = player;
+        this.table = table;
+        this.random = random;
+        this.reaction_millis = reaction_millis;
+        this.error_rate = error_rate;
+    }
+
+    @Override
+    public int nextPress() throws InterruptedException {
+        if (next == plan.length) {
+            if (busy() || !makePlan()) {
+                Thread.sleep(IDLE_MILLIS);
+                return NONE;
+            }
+        }
+
+        if (reaction_millis > 0)
+            Thread.sleep((long) (reaction_millis * (0.5 + random.nextDouble())));  // between half and one and a half the average
+        if (player.isFrozen()) {
+            next = plan.length;  // the presses would be ignored, plan again after the freeze
+            return NONE;
+        }
+        if (error_rate > 0 && random.nextDouble() < error_rate)
+            return random.nextInt(env.config.tableSize);  // a mistake, the next plan takes the token back
+        return plan[next++];
+    }
+
+    /**
+     * @return - true iff the player is still handling earlier key presses (or a claim of them), or is frozen, so the
+     *           tokens on the table don't show the outcome of the last plan yet.
+     */
+    private boolean busy() {
+        return player.pending_keys.get() > 0 || player.needs_set_check || player.isFrozen();
+    }
+
+    /**
+     * Plans the key presses that take back the player's tokens that aren't on a legal set on the table, and then
+     * place tokens on the rest of the set.
+     *
+     * @return - false iff there is no legal set on the table.
+     */
+    private boolean makePlan() {
+        int[] set = table.anySet(random);
+        if (set == null)
+            return false;
+
+        int[] token_slots = table.tokenSlots(player.id);
+        int[] presses = new int[token_slots.length + set.length];
+        int count = 0;
+        for (int slot : token_slots)
+            if (Arrays.binarySearch(set, slot) < 0) presses[count++] = slot;
+        for (int slot : set)
+            if (Arrays.binarySearch(token_slots, slot) < 0) presses[count++] = slot;
+        if (count == 0)  // the tokens are already on the set, but were never claimed: take one back, the next plan places it
+            presses[count++] = set[0];  // again (pressing it twice at once would just cancel out in the key queue)
+
+        plan = Arrays.copyOf(presses, count);
+        next = 0;
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class keeps track of whether a legal set can still be made out of the cards that are left in the game
+ * (the dealer's deck together with the cards on the table).
+ * Cards only ever leave the game: the cards the dealer takes off the table and returns to the deck (see
+ * removeAllCardsFromTable) never left it, so returning them doesn't change the cards in the game.
+ * It is only used by the dealer thread, so it is not thread safe.
+ */
+public class SolvabilityTracker {
+
+    /**
+     * The game environment object.
+     */
+    private final Env env;
+
+    /**
+     * live[card] is true iff the card is still in the game (in the deck or on the table).
+     */
+    private final boolean[] live;
+
+    /**
+     * The cards that are still in the game, in no particular order (only the first live_count entries are used).
+     */
+    private final int[] live_cards;
+
+    /**
+     * Mapping between a card and its index in live_cards (-1 if it is not in the game).
+     */
+    private final int[] live_index;
+
+    private int live_count;
+
+    /**
+     * The number of legal sets among the cards in the game (only maintained when featureSize == 3).
+     */
+    private int sets_count;
+
+    /**
+     * Whether any legal set is left, for featureSize != 3 (recomputed lazily when stale).
+     */
+    private boolean has_set;
+    private boolean stale;
+
+    /**
+     * Creates a tracker in which all the cards of the deck are in the game.
+     *
+     * @param env - the game environment object.
+     */
+    public SolvabilityTracker(Env env) {
+        this.env = env;
+        live = new boolean[env.config.deckSize];
+        live_cards = new int[env.config.deckSize];
+        live_index = new int[env.config.deckSize];
+        for (int card = 0; card < env.config.deckSize; card++) {
+            live[card] = true;
+            live_cards[card] = card;
+            live_index[card] = card;
+        }
+        live_count = env.config.deckSize;
+
+        if (env.config.featureSize == 3) {
+            for (int i = 0; i < live_count; i++)
+                for (int j = i + 1; j < live_count; j++)
+                    if (env.util.completeSet(live_cards[i], live_cards[j]) > live_cards[j]) sets_count++;
+        } else {
+            stale = true;
+        }
+    }
+
+    /**
+     * Counts the legal sets that the card makes with two other cards in the game.
+     */
+    private int countSetsWith(int card) {
+        int count = 0;
+        for (int i = 0; i < live_count; i++) {
+            int other = live_cards[i];
+            if (other == card) continue;
+            int third = env.util.completeSet(card, other);
+            if (third > other && live[third]) count++;  // so that every set is counted once
+        }
+        return count;
+    }
+
+    /**
+     * Called when a card leaves the game (e.g. it was part of a set that was collected).
+     *
+     * @param card - the card id.
+     */
+    public void remove(int card) {
+        if (!live[card]) return;
+        if (env.config.featureSize == 3) sets_count -= countSetsWith(card);
+        else stale = true;
+
+        live[card] = false;
+        int index = live_index[card];
+        int last = live_cards[--live_count];
+        live_cards[index] = last;
+        live_index[last] = index;
+        live_index[card] = -1;
+    }
+
+    /**
+     * @return - true iff a legal set can be made out of the cards that are still in the game.
+     */
+    public boolean hasSet() {
+        if (env.config.featureSize == 3) return sets_count > 0;
+
+        if (stale) {
+            List<Integer> cards = new ArrayList<Integer>(live_count);
+            for (int i = 0; i < live_count; i++)
+                cards.add(live_cards[i]);
+            has_set = !env.util.findSets(cards, 1).isEmpty();
+            stale = false;
+        }
+        return has_set;
+    }
+
+    /**
+     * @return - the number of legal sets among the cards in the game (only when featureSize == 3, -1 otherwise).
+     */
+    public int setCount() {
+        return env.config.featureSize == 3 ? sets_count : -1;
+    }
+}
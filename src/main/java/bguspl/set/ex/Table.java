@@ -1,11 +1,21 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.EventLog;
+import bguspl.set.LatencyHistogram;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
-import java.util.Vector;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.stream.Collectors;
 
 /**
@@ -31,8 +41,78 @@ public class Table {
     protected final Integer[] cardToSlot; // slot per card (if any)       <<---------------------------------  represents the cards  <-----------
                                 //  size=81
     
-    protected volatile Vector<Vector<Integer>> players_tokens; // for the tokens the players have put  <<-------------------  represents the placed tokens on the table, used for locking slots
-    // when a player adds a token to the table, his id will be added to the vector inside the specified slot, this is size=12, this is used to lock a specified slot for synchronization.
+    /**
+     * The tokens the players have put on the table (which players marked each slot, and which slots each player marked).
+     */
+    protected final TokenMatrix tokens;
+
+    /**
+     * A lock per slot, held while the card in the slot is being placed or removed.
+     */
+    protected final ReentrantLock[] slot_locks;
+
+    /**
+     * The total number of nanoseconds spent waiting for each slot's lock (when it was held by another thread), and the
+     * distribution of these waits.
+     */
+    private final LongAdder[] slot_lock_wait_nanos;
+    private final LatencyHistogram slot_lock_waits;
+
+    /**
+     * The number of tokens placed, removed, and taken back because the card under them was replaced meanwhile.
+     */
+    private final LongAdder tokens_placed;
+    private final LongAdder tokens_removed;
+    private final LongAdder tokens_rolled_back;
+
+    /**
+     * Held by the dealer while it deals or collects all the cards.
+     */
+    protected final ReentrantLock table_lock;
+
+    /**
+     * Shows placed and removed cards on the display after the table delay, so the dealer doesn't sleep while holding
+     * the slot (null if config.blockingTableDelay or there is no delay).
+     */
+    private final ScheduledExecutorService display_scheduler;
+
+    /**
+     * The time (System.nanoTime) at which the last card change that was scheduled will be shown, so card changes are
+     * shown one table delay apart and in order. Only used by the dealer thread.
+     */
+    private long next_display_time;
+
+    /**
+     * The generation of each slot, increased whenever a card is placed in it or removed from it. A token or a claim made
+     * at the slot's current generation is about the card that is in the slot now.
+     */
+    private final AtomicLongArray generations;
+
+    /**
+     * The generation of the slot when the player placed his token on it, at [player * tableSize + slot].
+     * Each player's row is only used by that player's thread.
+     */
+    private final long[] token_generations;
+
+    /**
+     * The binary log of the game events (EventLog.DISABLED unless configured), also written to by the dealer.
+     */
+    protected final EventLog event_log;
+
+    /**
+     * The legal sets currently on the table, each one as a sorted array of slots. Updated by placeCard/removeCard.
+     */
+    private final List<int[]> sets_on_table;
+
+    /**
+     * Guards sets_on_table (a java.util.concurrent lock, so a virtual thread waiting for it doesn't pin its carrier).
+     */
+    private final ReentrantLock sets_lock;
+
+    /**
+     * The number of legal sets currently on the table (sets_on_table.size(), readable without locking).
+     */
+    private volatile int sets_count;
 
 
     /**
@@ -46,10 +126,36 @@ public class Table {
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
-        this.players_tokens = new Vector<Vector<Integer>>(env.config.tableSize);  //  when a player adds a token to the table, his id will be added to the vector inside the specified slot
+        this.tokens = new TokenMatrix(env.config.players, env.config.tableSize);
+        this.slot_locks = new ReentrantLock[env.config.tableSize];
         for(int i=0; i<env.config.tableSize; i++){  //         12 slots
-            players_tokens.add(new Vector<Integer>());
+            slot_locks[i] = new ReentrantLock();
+        }
+        this.slot_lock_wait_nanos = new LongAdder[env.config.tableSize];
+        for(int i=0; i<env.config.tableSize; i++){
+            slot_lock_wait_nanos[i] = env.metrics.counter(String.format("table.slot_%02d.lock_wait_ns", i));
         }
+        this.slot_lock_waits = env.metrics.histogram("table.slot_lock_wait");
+        this.tokens_placed = env.metrics.counter("table.tokens_placed");
+        this.tokens_removed = env.metrics.counter("table.tokens_removed");
+        this.tokens_rolled_back = env.metrics.counter("table.tokens_rolled_back");
+        this.table_lock = new ReentrantLock();
+        this.sets_on_table = new ArrayList<int[]>();
+        this.sets_lock = new ReentrantLock();
+        this.sets_count = 0;
+        this.generations = new AtomicLongArray(env.config.tableSize);
+        this.token_generations = new long[env.config.players * env.config.tableSize];
+        this.event_log = EventLog.open(env.config, env.logger);
+        if(env.config.blockingTableDelay || env.config.tableDelayMillis <= 0){
+            this.display_scheduler = null;
+        }else{
+            this.display_scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "table-display");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.next_display_time = System.nanoTime();
     }
 
     /**
@@ -66,13 +172,132 @@ public class Table {
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
-        env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
+        List<int[]> sets = new ArrayList<int[]>();
+        List<Integer[]> cards = new ArrayList<Integer[]>();  // the cards of the sets, read with the sets so they match
+        sets_lock.lock();
+        try {
+            for(int[] set : sets_on_table){
+                Integer[] set_cards = Arrays.stream(set).mapToObj(slot -> slotToCard[slot]).toArray(Integer[]::new);
+                if(Arrays.stream(set_cards).anyMatch(Objects::isNull)) continue;  // a card is being removed from the set
+                sets.add(set);
+                cards.add(set_cards);
+            }
+        } finally {
+            sets_lock.unlock();
+        }
+        for(int i = 0; i < sets.size(); i++){
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
-            List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
-            int[][] features = env.util.cardsToFeatures(set);
+            List<Integer> slots = Arrays.stream(sets.get(i)).boxed().collect(Collectors.toList());
+            int[][] features = env.util.cardsToFeatures(Arrays.stream(cards.get(i)).mapToInt(Integer::intValue).toArray());
             System.out.println(sb.append("slots: ").append(slots).append(" features: ").append(Arrays.deepToString(features)));  // concatenating strings
-        });
+        }
+    }
+
+
+    /**
+     * @return - true iff there is at least one legal set among the cards on the table.
+     */
+    public boolean hasSet() {
+        return sets_count > 0;
+    }
+
+    /**
+     * @return - the number of legal sets among the cards on the table.
+     */
+    public int setCount() {
+        return sets_count;
+    }
+
+    /**
+     * Returns one of the legal sets currently on the table.
+     *
+     * @return - a sorted array of the slots of a legal set, or null if there is none.
+     */
+    public int[] anySet() {
+        sets_lock.lock();
+        try {
+            return sets_on_table.isEmpty() ? null : sets_on_table.get(sets_on_table.size() - 1).clone();
+        } finally {
+            sets_lock.unlock();
+        }
+    }
+
+
+    /**
+     * Returns a random one of the legal sets currently on the table.
+     *
+     * @param random - the source of randomness of the caller.
+     * @return - a sorted array of the slots of a legal set, or null if there is none.
+     */
+    public int[] anySet(Random random) {
+        sets_lock.lock();
+        try {
+            return sets_on_table.isEmpty() ? null : sets_on_table.get(random.nextInt(sets_on_table.size())).clone();
+        } finally {
+            sets_lock.unlock();
+        }
+    }
+
+
+    /**
+     * Adds the legal sets that the card which was just placed in the slot completes to sets_on_table.
+     * @param slot - the slot in which a card was placed.
+     */
+    private void addSetsOfSlot(int slot) {
+        int card = slotToCard[slot];
+        sets_lock.lock();
+        try {
+            if(env.config.featureSize == 3){
+                // each pair of this card and another card on the table has exactly one card completing it to a set
+                for(int other = 0; other < slotToCard.length; other++){
+                    if(other == slot || slotToCard[other] == null) continue;
+                    int third = env.util.completeSet(card, slotToCard[other]);
+                    if(third < 0 || third >= cardToSlot.length) continue;
+                    Integer third_slot = cardToSlot[third];
+                    if(third_slot != null && third_slot > other){  // so that every set is added once
+                        int[] set = {slot, other, third_slot};
+                        Arrays.sort(set);
+                        sets_on_table.add(set);
+                    }
+                }
+            }else{
+                // sets can't be completed from a pair, keep only the sets found that contain the new card
+                List<Integer> cards = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
+                for(int[] set : env.util.findSets(cards, Integer.MAX_VALUE)){
+                    if(Arrays.stream(set).anyMatch(c -> c == card)){
+                        int[] slots = Arrays.stream(set).map(c -> cardToSlot[c]).sorted().toArray();
+                        sets_on_table.add(slots);
+                    }
+                }
+            }
+            sets_count = sets_on_table.size();
+        } finally {
+            sets_lock.unlock();
+        }
+    }
+
+
+    /**
+     * Removes all the sets that use the slot from sets_on_table.
+     * @param slot - the slot from which a card is being removed.
+     */
+    private void removeSetsOfSlot(int slot) {
+        sets_lock.lock();
+        try {
+            Iterator<int[]> it = sets_on_table.iterator();
+            while(it.hasNext()){
+                int[] set = it.next();
+                for(int set_slot : set){
+                    if(set_slot == slot){
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+            sets_count = sets_on_table.size();
+        } finally {
+            sets_lock.unlock();
+        }
     }
 
 
@@ -100,42 +325,119 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {  //  only the Dealer uses this method
-        synchronized(players_tokens.get(slot)){
-            try {
-                Thread.sleep(env.config.tableDelayMillis);
-            } catch (InterruptedException ignored) {}
+        lockSlot(slot);
+        try {
+            if(env.config.blockingTableDelay){
+                try {
+                    Thread.sleep(env.config.tableDelayMillis);
+                } catch (InterruptedException ignored) {}
+            }
     
+            if(slotToCard[slot] != null){
+                removeSetsOfSlot(slot);  // the card in the slot is being replaced
+            }
             cardToSlot[card] = slot;
             slotToCard[slot] = card;
-
-            env.ui.placeCard(card, slot);
-            env.logger.info("Dealer Placed a card on the table");
+            generations.incrementAndGet(slot);
+            addSetsOfSlot(slot);
+            event_log.log(EventLog.CARD_PLACED, card, slot);
+        } finally {
+            slot_locks[slot].unlock();
         }
 
+        showAfterTableDelay(() -> env.ui.placeCard(card, slot));
+        env.logger.info("Dealer Placed a card on the table");
     }
 
 
 
+    /**
+     * Locks a slot, measuring the time spent waiting if another thread holds it.
+     * @param slot - the slot.
+     */
+    private void lockSlot(int slot){
+        if(slot_locks[slot].tryLock()){
+            return;
+        }
+        long start = System.nanoTime();
+        slot_locks[slot].lock();
+        long waited = System.nanoTime() - start;
+        slot_lock_wait_nanos[slot].add(waited);
+        slot_lock_waits.record(waited);
+    }
+
+
     /**
      * Removes a card from a grid slot on the table.
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {  //  only the Dealer uses this method
-        synchronized(players_tokens.get(slot)){
+        removeCards(new int[]{slot});
+    }
+
+
+    /**
+     * Removes the cards from grid slots on the table, and then the tokens of all the players on these slots at once.
+     * A token that is placed meanwhile sees the slot's generation change and is taken back by the player (see placeToken).
+     * @param slots - the slots from which to remove the cards.
+     */
+    public void removeCards(int[] slots) {  //  only the Dealer uses this method
+        for(int slot : slots){
+            lockSlot(slot);
             try {
-                Thread.sleep(env.config.tableDelayMillis);
-            } catch (InterruptedException ignored) {}
-            int id_to_remove = slotToCard[slot];
-            slotToCard[slot] = null;
-            cardToSlot[id_to_remove] = null;
+                if(env.config.blockingTableDelay){
+                    try {
+                        Thread.sleep(env.config.tableDelayMillis);
+                    } catch (InterruptedException ignored) {}
+                }
+                int id_to_remove = slotToCard[slot];
+                removeSetsOfSlot(slot);
+                slotToCard[slot] = null;
+                cardToSlot[id_to_remove] = null;
+                generations.incrementAndGet(slot);
+
+                event_log.log(EventLog.CARD_REMOVED, slot);
+            } finally {
+                slot_locks[slot].unlock();
+            }
+        }
 
-            players_tokens.get(slot).clear();  // clears the tokens on this slot, remove the tokens in each player in the Dealer class when using the current method alongside it.
-    
-            env.ui.removeCard(slot);
+        tokens.clearSlots(slots);  // clears the tokens of all the players on these slots
+        for(int slot : slots){
             env.ui.removeTokens(slot);
+            showAfterTableDelay(() -> env.ui.removeCard(slot));
             env.logger.info("Dealer Removed a card from the table");
         }
+    }
+
+
+    /**
+     * Shows a card change on the display. With config.blockingTableDelay the dealer already slept, so it is shown
+     * right away, otherwise it is scheduled one table delay after the previous card change.
+     * @param show - the call to the user interface.
+     */
+    private void showAfterTableDelay(Runnable show) {
+        if(display_scheduler == null){
+            show.run();
+            return;
+        }
+        long now = System.nanoTime();
+        next_display_time = Math.max(now, next_display_time) + TimeUnit.MILLISECONDS.toNanos(env.config.tableDelayMillis);
+        display_scheduler.schedule(show, next_display_time - now, TimeUnit.NANOSECONDS);
+    }
+
 
+    /**
+     * Stops showing card changes on the display and closes the event log. Called by the dealer when the game is over.
+     */
+    public void close() {
+        if(display_scheduler != null){
+            display_scheduler.shutdown();
+            try {
+                display_scheduler.awaitTermination(env.config.tableDelayMillis * env.config.tableSize, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ignored) {}
+        }
+        event_log.close();
     }
 
 
@@ -151,14 +453,27 @@ public class Table {
      * Places a player token on a grid slot.     <<---------------------------------
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
+     * @return       - true iff the token was placed (false if the player already had a token there or the card was just removed).
      */
-    public void placeToken(int player, int slot){
-        synchronized(players_tokens.get(slot)){
-            players_tokens.get(slot).add(player);
-            env.ui.placeToken(player, slot);
-            env.logger.info("Player "+ player + " placed a token on slot " + slot);
+    public boolean placeToken(int player, int slot){
+        long generation = generations.get(slot);
+        if(!tokens.place(player, slot)){
+            return false;
         }
-
+        if(slotToCard[slot] == null || generations.get(slot) != generation){  // the dealer changed the card (and cleared its tokens) while we were placing the token
+            tokens.remove(player, slot);
+            tokens_rolled_back.increment();
+            return false;
+        }
+        tokens_placed.increment();
+        token_generations[player * slotToCard.length + slot] = generation;
+        event_log.log(EventLog.TOKEN_PLACED, player, slot);
+        env.ui.placeToken(player, slot);
+        if(!tokens.has(player, slot)){  // the dealer cleared the slot meanwhile, make sure the ui doesn't keep showing the token
+            env.ui.removeToken(player, slot);
+        }
+        env.logger.info(() -> "Player "+ player + " placed a token on slot " + slot);
+        return true;
     }
 
 
@@ -167,16 +482,88 @@ public class Table {
      * Removes a token of a player from a grid slot.     <<---------------------------------
      * @param player - the player the token belongs to.
      * @param slot   - the slot from which to remove the token.
-     * @return       - true iff a token was successfully removed.  //  we check before removing so just returned true because we already check elsewhere that we can remove, so bool no needed.
+     * @return       - true iff a token was successfully removed.
      */
     public boolean removeToken(int player, int slot){
-        synchronized(players_tokens.get(slot)){
-            Integer Int_form_player = player;
-            players_tokens.get(slot).remove(Int_form_player);
-            env.ui.removeToken(player, slot);
-            env.logger.info("Player "+ player + " removed a token from slot " + slot);
-            return true; //  in the case the removal was unsuccessful because of a reason like having no token to remove, but we already checked in the Player's run() so won't use the bool returned.
+        if(!tokens.remove(player, slot)){
+            return false;
         }
+        tokens_removed.increment();
+        event_log.log(EventLog.TOKEN_REMOVED, player, slot);
+        env.ui.removeToken(player, slot);
+        env.logger.info(() -> "Player "+ player + " removed a token from slot " + slot);
+        return true;
+    }
+
+
+    /**
+     * @param player - the player id.
+     * @param slot   - the slot.
+     * @return       - true iff the player has a token on the slot.
+     */
+    public boolean hasToken(int player, int slot){
+        return tokens.has(player, slot);
+    }
+
+    /**
+     * @param player - the player id.
+     * @return       - the number of tokens the player has on the table.
+     */
+    public int countTokens(int player){
+        return tokens.count(player);
+    }
+
+    /**
+     * @param player - the player id.
+     * @return       - the slots on which the player has tokens, in ascending order.
+     */
+    public int[] tokenSlots(int player){
+        return tokens.slotsOf(player);
     }
-}
 
+
+    /**
+     * @param slot - the slot.
+     * @return     - the slot's generation, increased whenever a card is placed in it or removed from it.
+     */
+    public long generation(int slot){
+        return generations.get(slot);
+    }
+
+
+    /**
+     * Makes a claim that the cards under the player's tokens are a legal set. Called by the player's thread.
+     * @param player - the player id.
+     * @return       - the claim, or null if a card under one of the tokens was just replaced.
+     */
+    public Claim claim(int player){
+        int[] slots = tokens.slotsOf(player);
+        int[] cards = new int[slots.length];
+        long[] claim_generations = new long[slots.length];
+        for(int i = 0; i < slots.length; i++){
+            claim_generations[i] = token_generations[player * slotToCard.length + slots[i]];
+            Integer card = slotToCard[slots[i]];
+            if(card == null || generations.get(slots[i]) != claim_generations[i]){
+                return null;
+            }
+            cards[i] = card;
+        }
+        return new Claim(player, slots, cards, claim_generations);
+    }
+
+
+    /**
+     * Checks that a claim is about the cards that are on the table now, by comparing the generations of the claimed
+     * slots. Called by the dealer, who is the only one who places and removes cards, so no lock is needed.
+     * @param claim - the claim.
+     * @return      - true iff none of the claimed cards was replaced since the player placed his tokens on them.
+     */
+    public boolean isCurrent(Claim claim){
+        for(int i = 0; i < claim.slots.length; i++){
+            if(generations.get(claim.slots[i]) != claim.generations[i]){
+                return false;
+            }
+        }
+        return true;
+    }
+}
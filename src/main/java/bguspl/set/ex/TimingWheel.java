@@ -0,0 +1,187 @@
+package bguspl.set.ex;
+
+/**
+ * A hierarchical timing wheel of the dealer's deadlines (freeze display ticks and expiries, countdown display ticks,
+ * the hint and the reshuffle), in System.nanoTime() with a resolution of one millisecond.
+ * Scheduling and cancelling a timer take constant time, and advancing the wheel only does work for the timers whose
+ * deadline passed (and once in every 64 ticks, moving the timers of the next 64 ticks down a level), no matter how
+ * many timers are waiting. Not thread safe: used by the dealer thread only.
+ */
+public class TimingWheel {
+
+    private static final long TICK_NANOS = 1000000;  // a millisecond
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;  // slots in each level
+    private static final int MASK = SLOTS - 1;
+    private static final int LEVELS = 4;  // level i slots are 64^i ticks long, so the wheel spans 64^4 ms (about 4.6 hours)
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    /**
+     * A scheduled callback.
+     */
+    public static class Timer {
+        private final Runnable callback;
+        private long deadline_tick;
+        private long tick;  // the tick of the slot the timer is in (earlier than deadline_tick if beyond the wheel)
+        private Timer next;
+        private Timer previous;
+        private Timer[] list;  // the slot the timer is in, null once it fired or was cancelled
+        private int index;
+
+        private Timer(Runnable callback) {
+            this.callback = callback;
+        }
+
+        /**
+         * @return - true iff the timer is waiting to fire.
+         */
+        public boolean isPending() {
+            return list != null;
+        }
+    }
+
+    private final long origin_nanos;
+    private final Timer[][] wheel = new Timer[LEVELS][SLOTS];  // the heads of the slots' lists
+    private long current_tick = 0;  // the next tick to process
+    private int size = 0;
+
+    /**
+     * @param origin_nanos - the System.nanoTime() of tick 0.
+     */
+    public TimingWheel(long origin_nanos) {
+        this.origin_nanos = origin_nanos;
+    }
+
+    /**
+     * Schedules a callback (run by advance).
+     *
+     * @param deadline_nanos - the System.nanoTime() after which to run the callback.
+     * @param callback       - the callback.
+     * @return - the timer, for cancelling it.
+     */
+    public Timer schedule(long deadline_nanos, Runnable callback) {
+        Timer timer = new Timer(callback);
+        long nanos = deadline_nanos - origin_nanos;
+        timer.deadline_tick = nanos <= 0 ? 0 : (nanos + TICK_NANOS - 1) / TICK_NANOS;  // rounded up, so a timer never fires early
+        insert(timer);
+        size++;
+        return timer;
+    }
+
+    /**
+     * Cancels a timer (nothing happens if it already fired or was cancelled).
+     *
+     * @param timer - the timer, may be null.
+     */
+    public void cancel(Timer timer) {
+        if (timer != null && timer.list != null) {
+            unlink(timer);
+            size--;
+        }
+    }
+
+    /**
+     * @return - the number of pending timers.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Runs the callbacks of all the timers whose deadline passed, in the order of their deadlines (by the millisecond).
+     * A callback may schedule and cancel timers; the ones it schedules with a passed deadline run in this call too.
+     *
+     * @param now_nanos - System.nanoTime().
+     */
+    public void advance(long now_nanos) {
+        long target = (now_nanos - origin_nanos) / TICK_NANOS;
+        while (current_tick <= target) {
+            int index = (int) (current_tick & MASK);
+            if (index == 0) cascade(1);
+            Timer timer;
+            while ((timer = wheel[0][index]) != null) {
+                unlink(timer);
+                if (timer.deadline_tick > current_tick) {  // went around the top level
+                    insert(timer);
+                    continue;
+                }
+                size--;
+                timer.callback.run();
+            }
+            current_tick++;
+        }
+    }
+
+    /**
+     * @return - the System.nanoTime() by which advance should be called next: the deadline of the nearest timer, or
+     *           when the timers of a higher level have to move down, whichever is earlier (Long.MAX_VALUE if none).
+     */
+    public long nextDeadline() {
+        if (size == 0) return Long.MAX_VALUE;
+        long tick = Long.MAX_VALUE;
+        for (int offset = 0; offset < SLOTS; offset++) {
+            if (wheel[0][(int) ((current_tick + offset) & MASK)] != null) {
+                tick = current_tick + offset;
+                break;
+            }
+        }
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = SLOT_BITS * level;
+            // the current slot moves down at its first tick, after that its index holds the slot a round later
+            long first = (current_tick & ((1L << shift) - 1)) == 0 ? current_tick >> shift : (current_tick >> shift) + 1;
+            for (int offset = 0; offset < SLOTS; offset++) {
+                if (wheel[level][(int) ((first + offset) & MASK)] != null) {
+                    tick = Math.min(tick, (first + offset) << shift);  // the slot moves down when its first tick comes
+                    break;
+                }
+            }
+        }
+        return tick == Long.MAX_VALUE ? tick : origin_nanos + tick * TICK_NANOS;
+    }
+
+    /**
+     * Moves the timers of the slot of the current tick in a level down, to the levels below it (first the levels
+     * above it, if the slot is the first one of its level).
+     */
+    private void cascade(int level) {
+        if (level == LEVELS) return;
+        int index = (int) ((current_tick >> (SLOT_BITS * level)) & MASK);
+        if (index == 0) cascade(level + 1);
+        Timer timer;
+        while ((timer = wheel[level][index]) != null) {
+            unlink(timer);
+            insert(timer);
+        }
+    }
+
+    private void insert(Timer timer) {
+        long delta = timer.deadline_tick - current_tick;
+        timer.tick = timer.deadline_tick;
+        if (delta < 0) {
+            timer.tick = current_tick;  // already passed, runs with the current tick
+            delta = 0;
+        } else if (delta > MAX_DELTA) {
+            timer.tick = current_tick + MAX_DELTA;  // beyond the wheel, checked again when the slot's tick comes
+            delta = MAX_DELTA;
+        }
+        int level = 0;
+        while (delta >= (1L << (SLOT_BITS * (level + 1)))) level++;
+        int index = (int) ((timer.tick >> (SLOT_BITS * level)) & MASK);
+        Timer[] list = wheel[level];
+        timer.list = list;
+        timer.index = index;
+        timer.previous = null;
+        timer.next = list[index];
+        if (timer.next != null) timer.next.previous = timer;
+        list[index] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.previous != null) timer.previous.next = timer.next;
+        else timer.list[timer.index] = timer.next;
+        if (timer.next != null) timer.next.previous = timer.previous;
+        timer.list = null;
+        timer.next = null;
+        timer.previous = null;
+    }
+}
@@ -0,0 +1,187 @@
+package bguspl.set.ex;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class holds the tokens the players placed on the table, as one bit per (player, slot).
+ * The bits are kept twice: one row of words per slot (which players have a token on it) and one row of words per
+ * player (which slots the player marked), so both questions are answered by reading a word or two.
+ * All the updates are lock-free (compare-and-set on a single word).
+ *
+ * @inv by_player has the bit of (player, slot) iff by_slot has it, whenever no update is in progress
+ */
+public class TokenMatrix {
+
+    private static final int WORD_BITS = 64;
+
+    /**
+     * The number of words in each slot's row (one bit per player) and in each player's row (one bit per slot).
+     */
+    private final int slot_row_words;
+    private final int player_row_words;
+
+    /**
+     * by_slot[slot * slot_row_words + player / 64] has bit (player % 64) iff the player has a token on the slot.
+     */
+    private final AtomicLongArray by_slot;
+
+    /**
+     * by_player[player * player_row_words + slot / 64] has bit (slot % 64) iff the player has a token on the slot.
+     */
+    private final AtomicLongArray by_player;
+
+    private final int players;
+    private final int slots;
+
+    public TokenMatrix(int players, int slots) {
+        this.players = players;
+        this.slots = slots;
+        slot_row_words = Math.max(1, (players + WORD_BITS - 1) / WORD_BITS);
+        player_row_words = Math.max(1, (slots + WORD_BITS - 1) / WORD_BITS);
+        by_slot = new AtomicLongArray(slots * slot_row_words);
+        by_player = new AtomicLongArray(players * player_row_words);
+    }
+
+    /**
+     * Sets (or clears) a bit in a word of the array.
+     * @return - true iff the bit was changed.
+     */
+    private static boolean update(AtomicLongArray words, int index, long bit, boolean set) {
+        while (true) {
+            long word = words.get(index);
+            boolean is_set = (word & bit) != 0;
+            if (is_set == set) return false;
+            if (words.compareAndSet(index, word, set ? word | bit : word & ~bit)) return true;
+        }
+    }
+
+    private int slotIndex(int player, int slot) {
+        return slot * slot_row_words + player / WORD_BITS;
+    }
+
+    private int playerIndex(int player, int slot) {
+        return player * player_row_words + slot / WORD_BITS;
+    }
+
+    /**
+     * Places a token of the player on the slot.
+     * @return - true iff the player did not already have a token on the slot.
+     */
+    public boolean place(int player, int slot) {
+        if (!update(by_player, playerIndex(player, slot), 1L << (slot % WORD_BITS), true)) return false;
+        update(by_slot, slotIndex(player, slot), 1L << (player % WORD_BITS), true);
+        return true;
+    }
+
+    /**
+     * Removes the token of the player from the slot.
+     * @return - true iff the player had a token on the slot.
+     */
+    public boolean remove(int player, int slot) {
+        if (!update(by_player, playerIndex(player, slot), 1L << (slot % WORD_BITS), false)) return false;
+        update(by_slot, slotIndex(player, slot), 1L << (player % WORD_BITS), false);
+        return true;
+    }
+
+    /**
+     * @return - true iff the player has a token on the slot.
+     */
+    public boolean has(int player, int slot) {
+        return (by_player.get(playerIndex(player, slot)) & (1L << (slot % WORD_BITS))) != 0;
+    }
+
+    /**
+     * @return - the number of tokens the player has on the table.
+     */
+    public int count(int player) {
+        int count = 0;
+        for (int i = player * player_row_words; i < (player + 1) * player_row_words; i++)
+            count += Long.bitCount(by_player.get(i));
+        return count;
+    }
+
+    /**
+     * @return - the slots on which the player has tokens, in ascending order.
+     */
+    public int[] slotsOf(int player) {
+        int[] result = new int[count(player)];
+        int n = 0;
+        for (int w = 0; w < player_row_words; w++) {
+            long word = by_player.get(player * player_row_words + w);
+            while (word != 0 && n < result.length) {
+                result[n++] = w * WORD_BITS + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * @return - the players that have a token on the slot, in ascending order.
+     */
+    public int[] playersOn(int slot) {
+        int count = 0;
+        for (int w = 0; w < slot_row_words; w++)
+            count += Long.bitCount(by_slot.get(slot * slot_row_words + w));
+        int[] result = new int[count];
+        int n = 0;
+        for (int w = 0; w < slot_row_words; w++) {
+            long word = by_slot.get(slot * slot_row_words + w);
+            while (word != 0 && n < result.length) {
+                result[n++] = w * WORD_BITS + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return n == result.length ? result : Arrays.copyOf(result, n);
+    }
+
+    /**
+     * Removes the tokens of all the players from the slot.
+     * @return - true iff there were any tokens on the slot.
+     */
+    public boolean clearSlot(int slot) {
+        return clearSlots(new int[]{slot});
+    }
+
+    /**
+     * Removes the tokens of all the players from the slots, with one update of each player's row for all the slots.
+     * @return - true iff there were any tokens on the slots.
+     */
+    public boolean clearSlots(int[] slots) {
+        long[] slot_mask = new long[player_row_words];
+        long[] marked_by = new long[slot_row_words];  // the players that had a token on any of the slots
+        for (int slot : slots) {
+            slot_mask[slot / WORD_BITS] |= 1L << (slot % WORD_BITS);
+            for (int w = 0; w < slot_row_words; w++)
+                marked_by[w] |= by_slot.getAndSet(slot * slot_row_words + w, 0);
+        }
+        boolean cleared = false;
+        for (int w = 0; w < slot_row_words; w++) {
+            long word = marked_by[w];
+            while (word != 0) {
+                int player = w * WORD_BITS + Long.numberOfTrailingZeros(word);
+                for (int pw = 0; pw < player_row_words; pw++)
+                    if (slot_mask[pw] != 0) clearBits(by_player, player * player_row_words + pw, slot_mask[pw]);
+                word &= word - 1;
+                cleared = true;
+            }
+        }
+        return cleared;
+    }
+
+    private static void clearBits(AtomicLongArray words, int index, long mask) {
+        while (true) {
+            long word = words.get(index);
+            if ((word & mask) == 0 || words.compareAndSet(index, word, word & ~mask)) return;
+        }
+    }
+
+    public int players() {
+        return players;
+    }
+
+    public int slots() {
+        return slots;
+    }
+}
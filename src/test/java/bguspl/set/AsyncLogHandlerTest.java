@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncLogHandlerTest {
+
+    @Test
+    @Timeout(30)
+    void publish_WritesEveryRecordFromManyThreads() throws InterruptedException {
+        StringWriter out = new StringWriter();
+        AsyncLogHandler handler = new AsyncLogHandler(out, 16);  // small, so the threads wait for room
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int id = t;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) handler.publish(new LogRecord(Level.INFO, id + ":" + i));
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        handler.flush();
+
+        String[] lines = out.toString().split(System.lineSeparator());
+        assertEquals(4000, lines.length);
+        int[] next = new int[threads.length];
+        for (String line : lines) {  // the records of every thread are written in order
+            String[] parts = line.split(":");
+            assertEquals(next[Integer.parseInt(parts[0])]++, Integer.parseInt(parts[1]));
+        }
+        handler.close();
+    }
+
+    @Test
+    @Timeout(30)
+    void publish_DropsWhenFull() throws InterruptedException {
+        CountDownLatch stalled = new CountDownLatch(1);
+        StringWriter text = new StringWriter();
+        Writer out = new Writer() {
+            @Override
+            public void write(char[] buffer, int offset, int length) {
+                text.write(buffer, offset, length);
+            }
+
+            @Override
+            public void flush() {
+                try {
+                    stalled.await();  // a slow disk
+                } catch (InterruptedException ignored) {
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        AsyncLogHandler handler = new AsyncLogHandler(out, 4);
+        handler.setDropWhenFull(true);
+        for (int i = 0; i < 100; i++) handler.publish(new LogRecord(Level.INFO, "record " + i));
+        assertTrue(handler.dropped() > 0);
+
+        stalled.countDown();
+        handler.close();
+        assertTrue(text.toString().contains("log records were dropped"));
+        assertTrue(text.toString().contains("record 0"));
+    }
+}
@@ -0,0 +1,110 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardAtlasTest {
+
+    private static final Logger logger = Logger.getLogger("CardAtlasTest");
+
+    static {
+        logger.setUseParentHandlers(false);
+    }
+
+    private static Config config(int cellWidth, int cellHeight) {
+        Properties properties = new Properties();
+        properties.put("CellWidth", Integer.toString(cellWidth));
+        properties.put("CellHeight", Integer.toString(cellHeight));
+        return new Config(logger, properties);
+    }
+
+    private static BufferedImage drawn(CardAtlas atlas, Config config, int card) {
+        BufferedImage image = new BufferedImage(config.cellWidth, config.cellHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics g = image.createGraphics();
+        atlas.draw(g, card, 0, 0);
+        g.dispose();
+        return image;
+    }
+
+    @Test
+    void draw_DrawsTheCardImage() throws IOException, InterruptedException {
+        Config config = config(258, 167);  // the size of the card images
+        CardAtlas atlas = new CardAtlas(config, logger, null);
+        atlas.awaitLoaded();
+        int card = 41;
+        BufferedImage expected = ImageIO.read(getClass().getClassLoader().getResource(
+                "cards/" + UserInterfaceSwing.intInBaseToPaddedString(card, config.featureCount, config.featureSize) + ".png"));
+
+        BufferedImage image = drawn(atlas, config, card);
+        for (int y = 0; y < config.cellHeight; y += 7)
+            for (int x = 0; x < config.cellWidth; x += 7)
+                assertEquals(expected.getRGB(x, y), image.getRGB(x, y), "pixel " + x + "," + y);
+    }
+
+    @Test
+    void draw_CardsAreScaledToTheCell() throws InterruptedException {
+        Config config = config(60, 40);
+        CardAtlas atlas = new CardAtlas(config, logger, null);
+        atlas.awaitLoaded();
+
+        BufferedImage card = drawn(atlas, config, 0);
+        BufferedImage empty = drawn(atlas, config, CardAtlas.EMPTY);
+        int differentPixels = 0;
+        for (int y = 0; y < config.cellHeight; y++)
+            for (int x = 0; x < config.cellWidth; x++)
+                if (card.getRGB(x, y) != empty.getRGB(x, y)) differentPixels++;
+        assertNotEquals(0, differentPixels);
+        assertNotEquals(0, card.getRGB(config.cellWidth / 2, config.cellHeight / 2) >>> 24);  // the whole cell is covered
+    }
+
+    @Test
+    @Timeout(30)
+    void awaitLoaded_EveryCardIsLoadedAndReported() throws InterruptedException {
+        Config config = config(60, 40);
+        AtomicInteger reported = new AtomicInteger();
+        CardAtlas atlas = new CardAtlas(config, logger, card -> reported.incrementAndGet());
+        atlas.prioritize(80);
+        atlas.awaitLoaded();
+
+        assertEquals(config.deckSize, reported.get());  // once each, even when prioritized
+        for (int card = 0; card < config.deckSize; card++) assertTrue(atlas.isLoaded(card));
+        assertTrue(atlas.isLoaded(CardAtlas.EMPTY));
+    }
+
+    @Test
+    @Timeout(30)
+    void draw_CardsThatFailedToLoadAreDrawnEmptyAndNotQueuedAgain() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("CellWidth", "60");
+        properties.put("CellHeight", "40");
+        properties.put("FeatureCount", "2");  // there are no card images with two digit names
+        Config config = new Config(logger, properties);
+        AtomicInteger reported = new AtomicInteger();
+        CardAtlas atlas = new CardAtlas(config, logger, card -> reported.incrementAndGet());
+        atlas.awaitLoaded();
+
+        BufferedImage empty = drawn(atlas, config, CardAtlas.EMPTY);
+        for (int card = 0; card < config.deckSize; card++) {
+            assertFalse(atlas.isLoaded(card));
+            for (int frame = 0; frame < 3; frame++) {
+                BufferedImage image = drawn(atlas, config, card);
+                assertEquals(empty.getRGB(config.cellWidth / 2, config.cellHeight / 2), image.getRGB(config.cellWidth / 2, config.cellHeight / 2));
+            }
+        }
+        assertEquals(0, atlas.queued());
+        assertEquals(0, reported.get());
+    }
+}
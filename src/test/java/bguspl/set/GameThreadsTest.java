@@ -0,0 +1,45 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class GameThreadsTest {
+
+    private static Env env(String threadingMode) {
+        Logger logger = Logger.getLogger("GameThreadsTest");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.put("ThreadingMode", threadingMode);
+        return new Env(logger, new Config(logger, properties), new HeadlessUserInterface(), null);
+    }
+
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        return GameThreads.virtualThreadsAvailable() && (boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+    }
+
+    @Test
+    void newThread_PlatformMode() throws Exception {
+        Env env = env("platform");
+        assertFalse(env.config.virtualThreads);
+        Thread thread = GameThreads.newThread(env, () -> {}, "platform-player");
+        assertFalse(isVirtual(thread));
+        assertEquals("platform-player", thread.getName());
+    }
+
+    @Test
+    void newThread_VirtualModeRunsEvenWithoutVirtualThreads() throws Exception {
+        Env env = env("Virtual");
+        AtomicReference<String> ranOn = new AtomicReference<>();
+        Thread thread = GameThreads.newThread(env, () -> ranOn.set(Thread.currentThread().getName()), "virtual-player");
+        assertEquals(GameThreads.virtualThreadsAvailable(), isVirtual(thread));
+        thread.start();
+        thread.join();
+        assertEquals("virtual-player", ranOn.get());
+    }
+}
@@ -0,0 +1,40 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void percentile_WithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++)
+            histogram.record(value * 1000);
+
+        assertEquals(100_000, histogram.count());
+        assertEquals(100_000_000, histogram.max());
+        assertEquals(50_000_500, histogram.mean(), 1);
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9}) {
+            double expected = percentile * 1_000_000;
+            long actual = histogram.percentile(percentile);
+            assertTrue(actual >= expected && actual <= expected * 1.04, percentile + "th percentile is " + actual);
+        }
+        assertEquals(100_000_000, histogram.percentile(100));
+    }
+
+    @Test
+    void reset_ForgetsValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(5);
+        histogram.record(-1);
+        assertEquals(2, histogram.count());
+        assertEquals(5, histogram.percentile(100));
+        assertEquals(0, histogram.percentile(50));
+
+        histogram.reset();
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+    }
+}
@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsTest {
+
+    private static Config config(Logger logger, String metricsFile) {
+        Properties properties = new Properties();
+        properties.put("MetricsFile", metricsFile);
+        properties.put("MetricsIntervalSeconds", "0.01");
+        return new Config(logger, properties);
+    }
+
+    @Test
+    void snapshot_HasEveryMetric() {
+        Metrics metrics = new Metrics();
+        metrics.counter("b.counter").add(3);
+        metrics.counter("b.counter").increment();
+        metrics.gauge("c.gauge", () -> 7);
+        metrics.histogram("a.latency").record(2000000);
+
+        Map<String, Long> values = metrics.snapshot();
+        assertEquals(4, (long) values.get("b.counter"));
+        assertEquals(7, (long) values.get("c.gauge"));
+        assertEquals(1, (long) values.get("a.latency.count"));
+        assertEquals(2000, values.get("a.latency.max_us"), 2000 / 32);
+    }
+
+    @Test
+    void start_DumpsToTheFileAndRegistersWithJmx(@TempDir Path directory) throws Exception {
+        Logger logger = Logger.getLogger("MetricsTest");
+        logger.setUseParentHandlers(false);
+        Path file = directory.resolve("metrics.csv");
+        Metrics metrics = new Metrics();
+        metrics.counter("dealer.claims_checked").add(5);
+
+        metrics.start(config(logger, file.toString()), logger);
+        ObjectName name = new ObjectName("bguspl.set:type=Metrics");
+        assertEquals(5L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "dealer.claims_checked"));
+        Thread.sleep(50);
+        metrics.counter("dealer.claims_checked").increment();
+        metrics.stop();
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+        List<String> lines = Files.readAllLines(file);
+        assertEquals("time_ms,dealer.claims_checked", lines.get(0));
+        assertTrue(lines.size() >= 3);  // the header, at least one periodic dump and the last dump
+        assertTrue(lines.get(lines.size() - 1).endsWith(",6"));
+    }
+
+    @Test
+    void start_WithoutFileOrJmx() throws IOException {
+        Logger logger = Logger.getLogger("MetricsTest");
+        logger.setUseParentHandlers(false);
+        Properties properties = new Properties();
+        properties.put("MetricsJmx", "False");
+        Metrics metrics = new Metrics();
+        metrics.start(new Config(logger, properties), logger);
+        metrics.stop();
+    }
+}
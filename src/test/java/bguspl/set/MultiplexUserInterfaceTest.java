@@ -0,0 +1,151 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MultiplexUserInterfaceTest {
+
+    private static final Logger logger = Logger.getLogger("MultiplexUserInterfaceTest");
+
+    static {
+        logger.setUseParentHandlers(false);
+    }
+
+    private static Config config() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        return new Config(logger, properties);
+    }
+
+    /**
+     * A sink that keeps what it displays, and can be held back until released.
+     */
+    private static class StateUserInterface extends HeadlessUserInterface {
+        final CountDownLatch released;
+        final CountDownLatch entered = new CountDownLatch(1);  // counted down by the first call
+        final List<String> calls = new ArrayList<>();
+        final int[] cards = new int[12];
+        final boolean[][] tokens = new boolean[12][2];
+        final int[] scores = new int[2];
+        long countdown = -1;
+        boolean disposed = false;
+
+        StateUserInterface(boolean held) {
+            released = new CountDownLatch(held ? 1 : 0);
+            Arrays.fill(cards, -1);
+        }
+
+        private void call(String call) {
+            entered.countDown();
+            try {
+                released.await();
+            } catch (InterruptedException ignored) {
+            }
+            calls.add(call);
+        }
+
+        @Override
+        public void placeCard(int card, int slot) {
+            call("placeCard " + card + " " + slot);
+            cards[slot] = card;
+        }
+
+        @Override
+        public void removeCard(int slot) {
+            call("removeCard " + slot);
+            cards[slot] = -1;
+        }
+
+        @Override
+        public void placeToken(int player, int slot) {
+            call("placeToken " + player + " " + slot);
+            tokens[slot][player] = true;
+        }
+
+        @Override
+        public void removeTokens() {
+            call("removeTokens");
+            for (boolean[] slot : tokens) Arrays.fill(slot, false);
+        }
+
+        @Override
+        public void setCountdown(long millies, boolean warn) {
+            call("setCountdown " + millies);
+            countdown = millies;
+        }
+
+        @Override
+        public void setScore(int player, int score) {
+            call("setScore " + player + " " + score);
+            scores[player] = score;
+        }
+
+        @Override
+        public void dispose() {
+            call("dispose");
+            disposed = true;
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void calls_ReachEverySinkAndOverwritesAreCoalesced() {
+        StateUserInterface fast = new StateUserInterface(false);
+        StateUserInterface slow = new StateUserInterface(true);
+        MultiplexUserInterface ui = new MultiplexUserInterface(config(), logger, 1024, fast, slow);
+
+        ui.placeCard(5, 0);
+        for (int millis = 1000; millis >= 0; millis--) ui.setCountdown(millis, false);
+        ui.placeToken(1, 0);
+        slow.released.countDown();
+        ui.dispose();
+
+        for (StateUserInterface sink : Arrays.asList(fast, slow)) {
+            assertTrue(sink.disposed);
+            assertEquals(0, sink.countdown);
+            assertEquals(5, sink.cards[0]);
+            assertTrue(sink.tokens[0][1]);
+        }
+        assertEquals(Arrays.asList("placeCard 5 0", "setCountdown 0", "placeToken 1 0", "dispose"), slow.calls);
+        assertEquals(0, ui.resyncs(1));
+    }
+
+    @Test
+    @Timeout(10)
+    void fullQueue_SinkIsResyncedToTheCurrentState() throws InterruptedException {
+        StateUserInterface slow = new StateUserInterface(true);
+        MultiplexUserInterface ui = new MultiplexUserInterface(config(), logger, 4, slow);
+
+        ui.placeCard(10, 0);
+        slow.entered.await();  // the sink is held in its first call, so the next calls fill its queue
+        for (int slot = 1; slot < 12; slot++) ui.placeCard(slot + 10, slot);
+        ui.removeCard(3);
+        ui.placeToken(0, 5);
+        ui.placeToken(1, 5);
+        ui.removeToken(0, 5);
+        ui.setScore(1, 7);
+        slow.released.countDown();
+        ui.dispose();
+
+        assertEquals(1, ui.resyncs(0));
+        int[] expected = {10, 11, 12, -1, 14, 15, 16, 17, 18, 19, 20, 21};
+        assertArrayEquals(expected, slow.cards);
+        assertTrue(slow.tokens[5][1]);
+        assertEquals(false, slow.tokens[5][0]);
+        assertEquals(7, slow.scores[1]);
+        assertTrue(slow.disposed);
+        assertEquals("dispose", slow.calls.get(slow.calls.size() - 1));
+    }
+}
@@ -0,0 +1,98 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RecordingUserInterfaceTest {
+
+    private static final Logger logger = Logger.getLogger("RecordingUserInterfaceTest");
+
+    static {
+        logger.setUseParentHandlers(false);
+    }
+
+    private static Config config(Path file, String maxMegabytes) {
+        Properties properties = new Properties();
+        properties.put("UiMode", "recording");
+        properties.put("UiRecordingFile", file.toString());
+        properties.put("UiRecordingMaxMegabytes", maxMegabytes);
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        return new Config(logger, properties);
+    }
+
+    private static String[] printed(Path file) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        RecordingUserInterface.print(file, new PrintStream(out, true));
+        return out.toString().split(System.lineSeparator());
+    }
+
+    @Test
+    void dispose_LeavesEveryCallInTheFile(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("ui.bin");
+        RecordingUserInterface ui = new RecordingUserInterface(config(file, "1"), logger);
+        ui.placeCard(41, 3);
+        ui.placeToken(1, 3);
+        ui.setCountdown(4500, true);
+        ui.setFreeze(0, 2000);
+        ui.announceWinner(new int[]{0, 1});
+        ui.dispose();
+
+        assertEquals(32 + 7 * 24, Files.size(file));  // truncated to the records
+        String[] lines = printed(file);
+        assertEquals(8, lines.length);
+        assertTrue(lines[0].startsWith("players=2 tableSize=12"));
+        assertTrue(lines[1].endsWith("placeCard slot=3 card=41"), lines[1]);
+        assertTrue(lines[2].endsWith("placeToken player=2 slot=3"), lines[2]);
+        assertTrue(lines[3].endsWith("setCountdown millies=4500 warn"), lines[3]);
+        assertTrue(lines[4].endsWith("setFreeze player=1 millies=2000"), lines[4]);
+        assertTrue(lines[6].endsWith("announceWinner player=2"), lines[6]);
+        assertTrue(lines[7].endsWith("dispose"), lines[7]);
+    }
+
+    @Test
+    void record_StopsWhenTheFileIsFull(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("ui.bin");
+        RecordingUserInterface ui = new RecordingUserInterface(config(file, "0.001"), logger);  // 1048 bytes, 42 records
+        for (int i = 0; i < 100; i++) ui.setScore(0, i);
+        ui.dispose();
+
+        String[] lines = printed(file);
+        assertEquals(1 + 42, lines.length);
+        assertTrue(lines[42].endsWith("setScore player=1 score=41"), lines[42]);
+    }
+
+    @Test
+    void dispose_WhileOtherThreadsRecord_KeepsOnlyWholeRecords(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("ui.bin");
+        RecordingUserInterface ui = new RecordingUserInterface(config(file, "8"), logger);  // room for all the calls
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int player = t % 2;
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 20000; i++) ui.setScore(player, i);  // keeps going after the dispose
+            });
+            threads[t].start();
+        }
+        Thread.sleep(5);
+        ui.dispose();
+        for (Thread thread : threads) thread.join();
+
+        long records = (Files.size(file) - 32) / 24;
+        assertEquals(32 + records * 24, Files.size(file));
+        String[] lines = printed(file);
+        assertEquals(1 + records, lines.length);  // every record in the file was written
+        assertTrue(lines[lines.length - 1].endsWith("dispose"), lines[lines.length - 1]);
+    }
+}
@@ -0,0 +1,60 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplayTest {
+
+    @Test
+    void replay_CountsLoggedEvents(@TempDir Path directory) throws IOException {
+        Path file = directory.resolve("game.setlog");
+        Properties properties = new Properties();
+        properties.put("EventLogFile", file.toString());
+        properties.put("Seed", "42");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        assertEquals(42, config.seed);
+
+        try (EventLog log = EventLog.open(config, logger)) {
+            log.log(EventLog.CARD_PLACED, 0, 0);
+            log.log(EventLog.CARD_PLACED, 1, 1);
+            log.log(EventLog.CARD_PLACED, 2, 2);
+            log.log(EventLog.CARD_PLACED, 3, 3);
+            log.log(EventLog.TOKEN_PLACED, 0, 0);
+            log.log(EventLog.TOKEN_PLACED, 0, 1);
+            log.log(EventLog.TOKEN_PLACED, 0, 3);
+            log.log(EventLog.PENALTY, 0);
+            log.log(EventLog.TOKEN_REMOVED, 0, 3);
+            log.log(EventLog.TOKEN_PLACED, 0, 2);
+            log.log(EventLog.SET_CLAIMED, 0, new int[]{0, 1, 2});
+            log.log(EventLog.CARD_REMOVED, 0);
+        }
+
+        try (InputStream in = Files.newInputStream(file)) {
+            Replay.Summary summary = Replay.replay(in, logger);
+            assertEquals(12, summary.events);
+            assertEquals(1, summary.sets);
+            assertEquals(0, summary.illegalSets);
+            assertEquals(1, summary.penalties);
+        }
+    }
+
+    @Test
+    void seedFor_SameSeedSameSequence() {
+        Properties properties = new Properties();
+        properties.put("Seed", "7");
+        Config first = new Config(Logger.getAnonymousLogger(), properties);
+        Config second = new Config(Logger.getAnonymousLogger(), properties);
+        assertEquals(first.seedFor(Config.DECK_RANDOM), second.seedFor(Config.DECK_RANDOM));
+        assertEquals(first.seedFor(Config.PLAYER_RANDOM + 3), second.seedFor(Config.PLAYER_RANDOM + 3));
+    }
+}
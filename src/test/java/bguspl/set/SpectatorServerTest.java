@@ -0,0 +1,152 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpectatorServerTest {
+
+    private static final Logger logger = Logger.getLogger("SpectatorServerTest");
+
+    static {
+        logger.setUseParentHandlers(false);
+    }
+
+    private SpectatorServer server;
+
+    private static Config config(String queueCapacity) {
+        Properties properties = new Properties();
+        properties.put("UiMode", "spectator");
+        properties.put("SpectatorPort", "0");
+        properties.put("SpectatorQueueCapacity", queueCapacity);
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("PlayerNames", "Bob,\"Alice\"");
+        return new Config(logger, properties);
+    }
+
+    /**
+     * Connects to the server and makes the WebSocket handshake.
+     */
+    private static Socket connect(SpectatorServer server) throws IOException {
+        Socket socket = new Socket("127.0.0.1", server.port());
+        socket.setSoTimeout(5000);
+        String key = "dGhlIHNhbXBsZSBub25jZQ==";
+        socket.getOutputStream().write(("GET / HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                + "Sec-WebSocket-Key: " + key + "\r\nSec-WebSocket-Version: 13\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        String response = readResponseHead(socket.getInputStream());
+        assertTrue(response.startsWith("HTTP/1.1 101"), response);
+        assertTrue(response.contains("Sec-WebSocket-Accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo="), response);  // from RFC 6455
+        return socket;
+    }
+
+    private static String readResponseHead(InputStream in) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        while (!head.toString("ISO-8859-1").endsWith("\r\n\r\n")) head.write(in.read());
+        return head.toString("ISO-8859-1");
+    }
+
+    private static String readText(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        assertEquals(0x81, in.readUnsignedByte());  // a final text frame
+        int length = in.readUnsignedByte();
+        if (length == 126) length = in.readUnsignedShort();
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    private static void waitFor(SpectatorServer server, int spectators) throws InterruptedException {
+        while (server.spectators() != spectators) Thread.sleep(5);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) server.dispose();
+    }
+
+    @Test
+    @Timeout(10)
+    void connect_GetsTheSnapshotAndThenTheChanges() throws Exception {
+        server = new SpectatorServer(config("16"), logger);
+        server.placeCard(41, 3);
+        server.placeToken(1, 3);
+        server.setScore(0, 2);
+
+        try (Socket socket = connect(server)) {
+            String snapshot = readText(socket);
+            assertTrue(snapshot.startsWith("{\"t\":\"snapshot\",\"rows\":3,\"columns\":4,\"players\":[\"Bob\",\"\\\"Alice\\\"\"]"), snapshot);
+            assertTrue(snapshot.contains("\"cards\":[-1, -1, -1, 41, -1"), snapshot);
+            assertTrue(snapshot.contains("\"tokens\":[[],[],[],[1],[]"), snapshot);
+            assertTrue(snapshot.contains("\"scores\":[2, 0]"), snapshot);
+
+            waitFor(server, 1);
+            server.removeCard(3);
+            server.setCountdown(4500, true);
+            assertEquals("{\"t\":\"card\",\"slot\":3,\"card\":-1}", readText(socket));
+            assertEquals("{\"t\":\"countdown\",\"ms\":4500,\"warn\":true}", readText(socket));
+        }
+    }
+
+    @Test
+    @Timeout(20)
+    void slowSpectator_IsDisconnectedWithoutSlowingTheGame() throws Exception {
+        server = new SpectatorServer(config("16"), logger);
+        try (Socket slow = connect(server)) {
+            waitFor(server, 1);
+            // the spectator never reads, so once the socket buffers fill up its queue fills up too
+            int changes = 0;
+            while (changes < 1_000_000 && server.spectators() == 1) server.setElapsed(changes++);
+            assertEquals(0, server.spectators());
+
+            InputStream in = slow.getInputStream();
+            byte[] buffer = new byte[1 << 16];
+            try {
+                while (in.read(buffer) != -1) ;  // until the server closed the connection
+            } catch (SocketException reset) {  // closed with frames still unsent
+            }
+
+            try (Socket late = connect(server)) {
+                String snapshot = readText(late);
+                assertTrue(snapshot.contains("\"timer\":\"elapsed\",\"ms\":" + (changes - 1)), snapshot);
+            }
+        }
+    }
+
+    private static void assertDisconnectedBy(byte[] frame) throws Exception {
+        SpectatorServer server = new SpectatorServer(config("16"), logger);
+        try (Socket socket = connect(server)) {
+            readText(socket);  // the snapshot
+            waitFor(server, 1);
+            socket.getOutputStream().write(frame);
+            try {
+                assertEquals(-1, socket.getInputStream().read());
+            } catch (SocketException reset) {
+            }
+            waitFor(server, 0);
+        } finally {
+            server.dispose();
+        }
+    }
+
+    @Test
+    @Timeout(10)
+    void badFrame_DisconnectsTheSpectator() throws Exception {
+        assertDisconnectedBy(new byte[]{(byte) 0x81, 2, 'h', 'i'});  // unmasked
+        assertDisconnectedBy(new byte[]{(byte) 0x81, (byte) (0x80 | 127), (byte) 0x80, 0, 0, 0, 0, 0, 0, 1});  // negative length
+        assertDisconnectedBy(new byte[]{(byte) 0x81, (byte) (0x80 | 127), 0, 0, 0, 0, 0x7f, 0, 0, 0});  // too long
+    }
+}
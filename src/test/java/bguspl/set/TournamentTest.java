@@ -0,0 +1,62 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TournamentTest {
+
+    @Test
+    void tournamentProperties_CompressesTime() {
+        Properties properties = new Properties();
+        properties.put("PenaltyFreezeSeconds", "2");
+        properties.put("HumanPlayers", "2");
+
+        Properties result = Tournament.tournamentProperties(properties, 10);
+        assertEquals(0.2, Double.parseDouble(result.getProperty("PenaltyFreezeSeconds")), 1e-9);
+        assertEquals(0.1, Double.parseDouble(result.getProperty("PointFreezeSeconds")), 1e-9);
+        assertEquals(0.01, Double.parseDouble(result.getProperty("TableDelaySeconds")), 1e-9);
+        assertEquals("0", result.getProperty("HumanPlayers"));
+    }
+
+    @Test
+    @Timeout(60)
+    void play_AllGamesEnd() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "2");  // a 9 cards deck
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("ComputerPlayers", "3");
+        properties.put("Seed", "1");
+        Logger logger = Logger.getLogger("TournamentTest");
+        logger.setUseParentHandlers(false);
+
+        Tournament.Summary summary = Tournament.play(properties, 4, 2, 100, logger);
+        assertEquals(4, summary.gameDurations.count());
+        assertTrue(summary.sets >= 4);  // at least one set is found in every game
+        assertEquals(summary.sets, summary.claimLatency.count());
+    }
+
+    @Test
+    @Timeout(60)
+    void play_PerfectComputerPlayersFindAllTheSets() throws InterruptedException {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", "2");
+        properties.put("Rows", "2");
+        properties.put("Columns", "2");
+        properties.put("ComputerPlayers", "2");
+        properties.put("AiStrategy", "perfect");
+        properties.put("Seed", "1");
+        Logger logger = Logger.getLogger("TournamentTest");
+        logger.setUseParentHandlers(false);
+
+        Tournament.Summary summary = Tournament.play(properties, 4, 2, 100, logger);
+        assertEquals(4, summary.gameDurations.count());
+        assertTrue(summary.sets >= 4);
+    }
+}
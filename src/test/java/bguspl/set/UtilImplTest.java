@@ -0,0 +1,123 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UtilImplTest {
+
+    Config config;
+    UtilImpl util;
+
+    private static Config createConfig(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        return new Config(Logger.getAnonymousLogger(), properties);
+    }
+
+    @BeforeEach
+    void setUp() {
+        config = createConfig(3, 4);
+        util = new UtilImpl(config);
+    }
+
+    /**
+     * A straightforward reference implementation of the set rules to compare against.
+     */
+    private boolean referenceTestSet(int[] cards) {
+        int[][] features = util.cardsToFeatures(cards);
+        for (int i = 0; i < config.featureCount; ++i) {
+            final int feature = i;
+            long distinct = IntStream.range(0, cards.length).map(j -> features[j][feature]).distinct().count();
+            if ((distinct == 1) == (distinct == cards.length)) return false;
+        }
+        return true;
+    }
+
+    @Test
+    void completeSet_FormsASetWithBothCards() {
+        for (int first = 0; first < config.deckSize; ++first)
+            for (int second = 0; second < config.deckSize; ++second) {
+                int third = util.completeSet(first, second);
+                assertTrue(referenceTestSet(new int[]{first, second, third}));
+            }
+    }
+
+    @Test
+    void completeSet_UnsupportedFeatureSize() {
+        util = new UtilImpl(createConfig(4, 3));
+        assertEquals(-1, util.completeSet(0, 1));
+    }
+
+    @Test
+    void testSet_MatchesReference() {
+        for (int a = 0; a < config.deckSize; ++a)
+            for (int b = a + 1; b < config.deckSize; ++b)
+                for (int c = b + 1; c < config.deckSize; c += 7) {
+                    int[] cards = {a, b, c};
+                    assertEquals(referenceTestSet(cards), util.testSet(cards));
+                }
+    }
+
+    @Test
+    void testSet_OtherFeatureSize() {
+        config = createConfig(4, 3);
+        util = new UtilImpl(config);
+        assertTrue(util.testSet(new int[]{0, 1, 2, 3}));
+        assertTrue(util.testSet(new int[]{0, 21, 42, 63}));
+        assertFalse(util.testSet(new int[]{0, 1, 2, 4}));
+        assertEquals(referenceTestSet(new int[]{5, 26, 47, 4}), util.testSet(new int[]{5, 26, 47, 4}));
+    }
+
+    @Test
+    void findSets_FullDeck() {
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        List<int[]> sets = util.findSets(deck, Integer.MAX_VALUE);
+        assertEquals(1080, sets.size());
+        sets.forEach(set -> assertTrue(referenceTestSet(set)));
+    }
+
+    @Test
+    void findSets_MatchesCombinations() {
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(deck, new Random(0));
+        for (int size = 0; size <= 21; ++size) {
+            List<Integer> cards = deck.subList(0, size);
+            Set<List<Integer>> expected = util.findSetsByCombinations(cards, Integer.MAX_VALUE).stream()
+                    .map(set -> Arrays.stream(set).boxed().collect(Collectors.toList())).collect(Collectors.toSet());
+            Set<List<Integer>> actual = util.findSets(cards, Integer.MAX_VALUE).stream()
+                    .map(set -> Arrays.stream(set).boxed().collect(Collectors.toList())).collect(Collectors.toSet());
+            assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    void findSets_OtherFeatureSize() {
+        config = createConfig(4, 2);
+        util = new UtilImpl(config);
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        List<int[]> sets = util.findSets(deck, Integer.MAX_VALUE);
+        assertEquals(4 + 4 + 24, sets.size()); // same first feature, same second feature, or a permutation of both
+        sets.forEach(set -> assertTrue(referenceTestSet(set)));
+    }
+
+    @Test
+    void findSets_StopsAtCount() {
+        List<Integer> deck = IntStream.range(0, config.deckSize).boxed().collect(Collectors.toList());
+        assertEquals(1, util.findSets(deck, 1).size());
+    }
+}
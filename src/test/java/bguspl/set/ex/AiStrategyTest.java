@@ -0,0 +1,82 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AiStrategyTest {
+
+    Table table;
+    private Env env;
+    private Player player;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0");
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        env = new Env(logger, config, new HeadlessUserInterface(), new UtilImpl(config));
+        table = new Table(env);
+        player = new Player(env, null, table, 0, false);
+    }
+
+    @Test
+    void perfect_PressesTheSlotsOfTheSetOnTheTable() throws InterruptedException {
+        table.placeCard(0, 3);  // cards 0, 1 and 2 differ only in their last feature
+        table.placeCard(1, 7);
+        table.placeCard(2, 10);
+        table.placeCard(4, 0);
+        assertEquals(1, table.setCount());
+
+        AiStrategy perfect = AiStrategy.create("perfect", env, player, table, new Random(0), 0);
+        int[] presses = {perfect.nextPress(), perfect.nextPress(), perfect.nextPress()};
+        Arrays.sort(presses);
+        assertArrayEquals(new int[]{3, 7, 10}, presses);
+    }
+
+    @Test
+    void perfect_PressesNothingWithoutASet() throws InterruptedException {
+        table.placeCard(0, 3);
+        table.placeCard(4, 7);
+
+        AiStrategy perfect = AiStrategy.create("perfect", env, player, table, new Random(0), 0);
+        assertEquals(AiStrategy.NONE, perfect.nextPress());
+    }
+
+    @Test
+    void random_PressesOnlySlotsWithCards() throws InterruptedException {
+        AiStrategy random = AiStrategy.create("random", env, player, table, new Random(0), 0);
+        assertEquals(AiStrategy.NONE, random.nextPress());  // an empty table
+
+        table.placeCard(20, 2);
+        table.placeCard(30, 5);
+        table.placeCard(40, 11);
+        Set<Integer> pressed = new HashSet<>();
+        for (int i = 0; i < 200; i++) pressed.add(random.nextPress());
+        assertEquals(new HashSet<>(Arrays.asList(2, 5, 11)), pressed);
+    }
+
+    @Test
+    void create_RejectsUnknownNames() {
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> AiStrategy.create("clairvoyant", env, player, table, new Random(0), 0));
+        assertTrue(e.getMessage().contains("clairvoyant"));
+        for (String name : AiStrategy.NAMES)
+            AiStrategy.create(name, env, player, table, new Random(0), 0);
+    }
+}
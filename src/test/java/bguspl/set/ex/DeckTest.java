@@ -0,0 +1,79 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DeckTest {
+
+    private static List<Integer> drawAll(Deck deck) {
+        List<Integer> cards = new ArrayList<>();
+        while (!deck.isEmpty()) cards.add(deck.draw());
+        return cards;
+    }
+
+    @Test
+    void remove_KeepsTheOtherCards() {
+        Deck deck = new Deck(10, new Random(0));
+        assertTrue(deck.remove(3));
+        assertTrue(deck.remove(9));  // the last card
+        assertTrue(deck.remove(0));
+        assertFalse(deck.remove(3));  // already removed
+
+        assertEquals(7, deck.size());
+        assertFalse(deck.contains(3));
+        assertTrue(deck.contains(5));
+        List<Integer> left = drawAll(deck);
+        Collections.sort(left);
+        assertEquals(Arrays.asList(1, 2, 4, 5, 6, 7, 8), left);
+    }
+
+    @Test
+    void add_ReturnsARemovedCardOnce() {
+        Deck deck = new Deck(5, new Random(0));
+        int card = deck.draw();
+        assertFalse(deck.contains(card));
+        assertTrue(deck.add(card));
+        assertFalse(deck.add(card));
+        assertEquals(5, deck.size());
+        assertEquals(card, deck.draw());  // added at the top
+    }
+
+    @Test
+    void shuffle_IsAPermutationDecidedByTheSeed() {
+        Deck deck = new Deck(81, new Random(42));
+        deck.remove(40);
+        deck.shuffle();
+        List<Integer> drawn = drawAll(deck);
+
+        Deck same = new Deck(81, new Random(42));
+        same.remove(40);
+        same.shuffle();
+        assertEquals(drawn, drawAll(same));
+
+        List<Integer> expected = new ArrayList<>();
+        for (int card = 0; card < 81; card++) if (card != 40) expected.add(card);
+        assertNotEquals(expected, drawn);  // not in order (with this seed)
+        Collections.sort(drawn);
+        assertEquals(expected, drawn);
+    }
+
+    @Test
+    void shuffle_KeepsTheIndexOfEveryCard() {
+        Deck deck = new Deck(20, new Random(7));
+        deck.shuffle();
+        for (int card = 0; card < 20; card += 2) assertTrue(deck.remove(card));  // remove uses the index
+        List<Integer> left = drawAll(deck);
+        Collections.sort(left);
+        assertEquals(Arrays.asList(1, 3, 5, 7, 9, 11, 13, 15, 17, 19), left);
+    }
+}
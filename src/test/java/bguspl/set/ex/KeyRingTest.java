@@ -0,0 +1,92 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KeyRingTest {
+
+    @Test
+    void offer_QueuesInOrderAndDropsWhenFull() {
+        KeyRing ring = new KeyRing(3);
+        assertEquals(4, ring.capacity());
+        for (int slot = 0; slot < 4; slot++) assertEquals(KeyRing.Offer.QUEUED, ring.offer(slot));
+        assertEquals(KeyRing.Offer.FULL, ring.offer(7));
+
+        for (int slot = 0; slot < 4; slot++) assertEquals(slot, ring.poll());
+        assertEquals(KeyRing.NONE, ring.poll());
+        assertEquals(KeyRing.Offer.QUEUED, ring.offer(7));  // room again, after wrapping around
+        assertEquals(7, ring.poll());
+    }
+
+    @Test
+    void offer_SameSlotTwiceCancelsOut() {
+        KeyRing ring = new KeyRing(4);
+        ring.offer(1);
+        ring.offer(2);
+        assertEquals(KeyRing.Offer.COALESCED, ring.offer(2));
+        assertEquals(KeyRing.Offer.QUEUED, ring.offer(2));  // a third press toggles again
+        assertEquals(KeyRing.Offer.QUEUED, ring.offer(1));  // not the last press
+
+        assertEquals(1, ring.poll());
+        assertEquals(2, ring.poll());
+        assertEquals(1, ring.poll());
+        assertEquals(KeyRing.NONE, ring.poll());
+        ring.offer(3);
+        assertEquals(3, ring.poll());
+        assertEquals(KeyRing.Offer.QUEUED, ring.offer(3));  // the last press was already taken
+    }
+
+    @Test
+    void cancelAll_CancelsTheQueuedPresses() {
+        KeyRing ring = new KeyRing(4);
+        ring.offer(0);
+        ring.offer(1);
+        ring.offer(1);
+        ring.offer(2);
+        assertEquals(2, ring.cancelAll());
+        assertEquals(KeyRing.NONE, ring.poll());
+        assertEquals(0, ring.cancelAll());
+    }
+
+    @Test
+    @Timeout(30)
+    void take_EveryPressIsTakenOrCancelledOnce() throws InterruptedException {
+        KeyRing ring = new KeyRing(4);
+        int presses = 200000;
+        final int LAST = 100;  // a slot that isn't pressed before
+        AtomicLong queued = new AtomicLong();
+        AtomicLong cancelled = new AtomicLong();
+        long[] taken = new long[1];
+
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < presses; i++) {
+                KeyRing.Offer result;
+                while ((result = ring.offer(i / 2 % 12)) == KeyRing.Offer.FULL) Thread.yield();  // every slot twice
+                queued.incrementAndGet();
+                if (result == KeyRing.Offer.COALESCED) cancelled.addAndGet(2);  // this press and the cancelled one
+            }
+        });
+        Thread reader = new Thread(() -> {
+            try {
+                while (ring.take() != LAST) taken[0]++;
+            } catch (InterruptedException ignored) {
+            }
+        });
+        reader.start();
+        writer.start();
+        Thread dealer = new Thread(() -> {  // cancels like the dealer does when it reshuffles
+            while (writer.isAlive()) cancelled.addAndGet(ring.cancelAll());
+        });
+        dealer.start();
+        writer.join();
+        dealer.join();
+        while (ring.offer(LAST) == KeyRing.Offer.FULL) Thread.yield();  // the writer is done, so this thread writes now
+        reader.join();
+
+        assertEquals(queued.get(), taken[0] + cancelled.get());
+    }
+}
@@ -0,0 +1,59 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SolvabilityTrackerTest {
+
+    private static Env createEnv(int featureSize, int featureCount) {
+        Properties properties = new Properties();
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        TableTest.MockLogger logger = new TableTest.MockLogger();
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, new TableTest.MockUserInterface(), new UtilImpl(config));
+    }
+
+    @Test
+    void setCount_MatchesFindSetsWhileRemovingCards() {
+        Env env = createEnv(3, 4);
+        SolvabilityTracker tracker = new SolvabilityTracker(env);
+        List<Integer> cards = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
+        Collections.shuffle(cards, new Random(0));
+
+        while (!cards.isEmpty()) {
+            assertEquals(env.util.findSets(cards, Integer.MAX_VALUE).size(), tracker.setCount());
+            tracker.remove(cards.remove(cards.size() - 1));
+        }
+        assertFalse(tracker.hasSet());
+    }
+
+    @Test
+    void hasSet_OtherFeatureSize() {
+        Env env = createEnv(4, 2);
+        SolvabilityTracker tracker = new SolvabilityTracker(env);
+        assertTrue(tracker.hasSet());
+
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < env.config.deckSize; card++)
+            cards.add(card);
+        while (!cards.isEmpty()) {
+            assertEquals(!env.util.findSets(cards, 1).isEmpty(), tracker.hasSet());
+            tracker.remove(cards.remove(0));
+        }
+    }
+}
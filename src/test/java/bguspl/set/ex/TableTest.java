@@ -4,6 +4,7 @@ import bguspl.set.Config;
 import bguspl.set.Env;
 import bguspl.set.UserInterface;
 import bguspl.set.Util;
+import bguspl.set.UtilImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -11,13 +12,19 @@ import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
     private Integer[] slotToCard;
     private Integer[] cardToSlot;
+    private Config config;
+    private MockLogger logger;
 
     @BeforeEach
     void setUp() {
@@ -30,8 +37,8 @@ class TableTest {
         properties.put("TableDelaySeconds", "0");
         properties.put("PlayerKeys1", "81,87,69,82");
         properties.put("PlayerKeys2", "85,73,79,80");
-        MockLogger logger = new MockLogger();
-        Config config = new Config(logger, properties);
+        logger = new MockLogger();
+        config = new Config(logger, properties);
         slotToCard = new Integer[config.tableSize];
         cardToSlot = new Integer[config.deckSize];
 
@@ -95,6 +102,127 @@ class TableTest {
         placeSomeCardsAndAssert();
     }
 
+    private void useRealUtil() {
+        Env env = new Env(logger, config, new MockUserInterface(), new UtilImpl(config));
+        table = new Table(env, slotToCard, cardToSlot);
+    }
+
+    @Test
+    void hasSet_UpdatedByPlaceAndRemoveCard() {
+        useRealUtil();
+        table.placeCard(0, 0);
+        table.placeCard(1, 3);
+        assertFalse(table.hasSet());
+        assertNull(table.anySet());
+
+        table.placeCard(2, 1);
+        assertTrue(table.hasSet());
+        assertEquals(1, table.setCount());
+        assertArrayEquals(new int[]{0, 1, 3}, table.anySet());
+
+        table.removeCard(3);
+        assertFalse(table.hasSet());
+        assertEquals(0, table.setCount());
+    }
+
+    @Test
+    void setCount_UpdatedWhenCardsAreReplaced() {
+        useRealUtil();
+        table.placeCard(40, 0);
+        table.placeCard(0, 1);
+        table.placeCard(80, 2);
+        table.placeCard(20, 3);
+        assertEquals(1, table.setCount());  // 0000 + 2222 = 1111
+
+        table.removeCard(1);
+        assertFalse(table.hasSet());
+        table.placeCard(60, 1);  // 2020 + 0202 = 1111
+        assertEquals(1, table.setCount());
+        assertArrayEquals(new int[]{0, 1, 3}, table.anySet());
+    }
+
+    @Test
+    void placeToken_TrackedPerPlayerAndSlot() {
+        fillAllSlots();
+        assertTrue(table.placeToken(0, 1));
+        assertTrue(table.placeToken(0, 3));
+        assertTrue(table.placeToken(1, 3));
+        assertFalse(table.placeToken(1, 3));
+
+        assertEquals(2, table.countTokens(0));
+        assertArrayEquals(new int[]{1, 3}, table.tokenSlots(0));
+        assertArrayEquals(new int[]{0, 1}, table.tokens.playersOn(3));
+
+        assertTrue(table.removeToken(0, 1));
+        assertFalse(table.removeToken(0, 1));
+        assertFalse(table.hasToken(0, 1));
+        assertArrayEquals(new int[]{3}, table.tokenSlots(0));
+    }
+
+    @Test
+    void removeCard_RemovesTheTokensOnTheSlot() {
+        fillAllSlots();
+        table.placeToken(0, 2);
+        table.placeToken(1, 2);
+        table.placeToken(1, 0);
+        table.removeCard(2);
+
+        assertFalse(table.hasToken(0, 2));
+        assertEquals(0, table.countTokens(0));
+        assertArrayEquals(new int[]{0}, table.tokenSlots(1));
+        assertFalse(table.placeToken(0, 2));  // no card in the slot
+    }
+
+    @Test
+    void claim_StaleOnceAClaimedCardIsReplaced() {
+        fillAllSlots();
+        table.placeToken(0, 0);
+        table.placeToken(0, 1);
+        table.placeToken(0, 2);
+        Claim claim = table.claim(0);
+        assertArrayEquals(new int[]{0, 1, 2}, claim.slots);
+        assertArrayEquals(new int[]{0, 1, 2}, claim.cards);
+        assertTrue(table.isCurrent(claim));
+
+        table.placeCard(8, 3);  // another slot changed
+        assertTrue(table.isCurrent(claim));
+
+        table.removeCard(1);
+        table.placeCard(9, 1);
+        assertFalse(table.isCurrent(claim));
+        assertArrayEquals(new int[]{0, 2}, table.claim(0).slots);  // the token on slot 1 was removed with the card
+    }
+
+    @Test
+    void placeToken_RecordsTheGenerationOfTheSlot() {
+        fillAllSlots();
+        table.removeCard(2);
+        table.placeCard(2, 2);
+        table.placeToken(0, 0);
+        table.placeToken(0, 2);
+        table.placeToken(0, 3);
+
+        Claim claim = table.claim(0);
+        assertEquals(table.generation(2), claim.generations[1]);
+        assertTrue(table.generation(2) > table.generation(0));
+        assertTrue(table.isCurrent(claim));
+    }
+
+    @Test
+    void removeCards_RemovesTheTokensOfAllTheSlots() {
+        fillAllSlots();
+        for (int player = 0; player < 2; player++)
+            for (int slot = 0; slot < slotToCard.length; slot++)
+                table.placeToken(player, slot);
+
+        table.removeCards(new int[]{0, 2, 3});
+
+        assertArrayEquals(new int[]{1}, table.tokenSlots(0));
+        assertArrayEquals(new int[]{1}, table.tokenSlots(1));
+        assertEquals(0, table.tokens.playersOn(2).length);
+        assertEquals(1, table.countCards());
+    }
+
     static class MockUserInterface implements UserInterface {
         @Override
         public void dispose() {}
@@ -138,6 +266,11 @@ class TableTest {
             return false;
         }
 
+        @Override
+        public int completeSet(int first, int second) {
+            return -1;
+        }
+
         @Override
         public List<int[]> findSets(List<Integer> deck, int count) {
             return null;
@@ -0,0 +1,118 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    void advance_RunsTimersInDeadlineOrderAndNeverEarly() {
+        long origin = 1000 * MS;  // any origin, like System.nanoTime()
+        TimingWheel wheel = new TimingWheel(origin);
+        Random random = new Random(0);
+        List<Long> fired = new ArrayList<>();
+        long[] now = {origin};
+        for (int i = 0; i < 1000; i++) {
+            long deadline = origin + (long) (random.nextDouble() * random.nextInt(5000000) * MS);  // up to well beyond a level
+            wheel.schedule(deadline, () -> {
+                assertTrue(now[0] >= deadline, "fired early");
+                fired.add(deadline);
+            });
+        }
+
+        while (wheel.size() > 0) {
+            long next = wheel.nextDeadline();
+            assertTrue(next > now[0] - MS && next < Long.MAX_VALUE);
+            now[0] = next + random.nextInt(3) * MS;  // the dealer wakes up late sometimes
+            wheel.advance(now[0]);
+        }
+        assertEquals(1000, fired.size());
+        for (int i = 1; i < fired.size(); i++)
+            assertTrue((fired.get(i - 1) + MS - 1) / MS <= (fired.get(i) + MS - 1) / MS, "out of order");
+    }
+
+    @Test
+    void cancel_TimerNeverRuns() {
+        TimingWheel wheel = new TimingWheel(0);
+        boolean[] ran = new boolean[2];
+        TimingWheel.Timer cancelled = wheel.schedule(100 * MS, () -> ran[0] = true);
+        TimingWheel.Timer kept = wheel.schedule(100 * MS, () -> ran[1] = true);
+        wheel.cancel(cancelled);
+        wheel.cancel(cancelled);  // twice does nothing
+
+        assertFalse(cancelled.isPending());
+        assertEquals(1, wheel.size());
+        wheel.advance(100 * MS);
+        assertFalse(ran[0]);
+        assertTrue(ran[1]);
+        assertFalse(kept.isPending());
+        assertEquals(Long.MAX_VALUE, wheel.nextDeadline());
+    }
+
+    @Test
+    void advance_CallbacksCanReschedule() {
+        TimingWheel wheel = new TimingWheel(0);
+        List<Long> ticks = new ArrayList<>();
+        Runnable[] tick = new Runnable[1];
+        tick[0] = () -> {
+            ticks.add((long) ticks.size());
+            if (ticks.size() < 5) wheel.schedule(ticks.size() * 1000 * MS, tick[0]);
+        };
+        wheel.schedule(0, tick[0]);
+
+        wheel.advance(2500 * MS);
+        assertEquals(3, ticks.size());
+        long next = wheel.nextDeadline();  // may be earlier than the timer, when its level has to move down
+        assertTrue(next > 2500 * MS && next <= 3000 * MS);
+        wheel.advance(10000 * MS);
+        assertEquals(5, ticks.size());
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void nextDeadline_SeesATimerInTheNextRoundOfTheCurrentSlot() {
+        TimingWheel wheel = new TimingWheel(0);
+        wheel.advance(63 * MS);
+        boolean[] ran = new boolean[1];
+        wheel.schedule(4096 * MS, () -> ran[0] = true);  // level 1, in the index of the current level 1 slot
+
+        assertEquals(1, wheel.size());
+        assertEquals(4096 * MS, wheel.nextDeadline());
+        wheel.advance(4095 * MS);
+        assertFalse(ran[0]);
+        assertEquals(4096 * MS, wheel.nextDeadline());
+        wheel.advance(4096 * MS);
+        assertTrue(ran[0]);
+    }
+
+    @Test
+    void nextDeadline_IsNeverLaterThanTheTimerAroundTheLevelBoundaries() {
+        long[] starts = {0, 1, 63, 64, 65, 4095, 4096, 4097, 262143, 262144, 262145};
+        long[] deltas = {1, 63, 64, 65, 4032, 4033, 4095, 4096, 4097, 262143, 262144, 262145, 16777215};
+        for (long start : starts) {
+            for (long delta : deltas) {
+                TimingWheel wheel = new TimingWheel(0);
+                wheel.advance(start * MS);
+                long deadline = (start + delta) * MS;
+                boolean[] ran = new boolean[1];
+                wheel.schedule(deadline, () -> ran[0] = true);
+                while (!ran[0]) {
+                    long next = wheel.nextDeadline();
+                    assertTrue(next <= deadline, "start " + start + " delta " + delta + ": next " + next / MS);
+                    wheel.advance(next);
+                }
+                assertEquals(0, wheel.size());
+            }
+        }
+    }
+}